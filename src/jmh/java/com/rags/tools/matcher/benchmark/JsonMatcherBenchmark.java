@@ -0,0 +1,136 @@
+package com.rags.tools.matcher.benchmark;
+
+import com.rags.tools.matcher.JsonMatcher;
+import com.rags.tools.matcher.Matcher;
+import com.rags.tools.matcher.MatchingResult;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for {@link JsonMatcher#compare}.
+ * Covers the object path, the array path with and without business keys, primitive arrays and ignore heavy specs.
+ * Array benchmarks are parameterised on size so that runs across releases give a scaling curve for the
+ * expected x actual matching.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}. JMH options go in {@code -Djmh.args=...}, the default
+ * adds the gc profiler (allocation rate) and writes {@code target/jmh-result.json}. For example
+ * {@code -Djmh.args="JsonMatcherBenchmark.objectArray -p size=10,1000 -prof gc"}.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonMatcherBenchmark {
+
+    private static final long SEED = 20190211L;
+
+    @State(Scope.Benchmark)
+    public static class ObjectState {
+        @Param({"10", "200"})
+        int fields;
+
+        JsonObject expected;
+        JsonObject actual;
+        Map<String, Object> ignored;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random random = new Random(SEED);
+            expected = Payloads.flatObject(random, fields);
+            actual = Payloads.mutate(random, expected, 0.05);
+            ignored = Payloads.ignoreEveryOther(expected);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class NestedState {
+        @Param({"4", "32"})
+        int depth;
+
+        JsonObject expected;
+        JsonObject actual;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random random = new Random(SEED);
+            expected = Payloads.nestedObject(random, depth, 10);
+            actual = Payloads.mutate(random, expected, 0.05);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ArrayState {
+        @Param({"10", "1000", "10000"})
+        int size;
+
+        JsonArray expected;
+        JsonArray actual;
+        JsonArray expectedPrimitives;
+        JsonArray actualPrimitives;
+        Map<String, Object> businessKey;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random random = new Random(SEED);
+            expected = Payloads.tradeArray(random, size);
+            actual = Payloads.mutateAndShuffle(random, expected, 0.05);
+            expectedPrimitives = Payloads.primitiveArray(random, size);
+            actualPrimitives = Payloads.mutateAndShuffle(random, expectedPrimitives, 0.05);
+            businessKey = Collections.singletonMap("tradeId", true);
+        }
+    }
+
+    private final Matcher matcher = new JsonMatcher();
+
+    @Benchmark
+    public MatchingResult flatObject(ObjectState state) {
+        return matcher.compare(state.expected, state.actual);
+    }
+
+    @Benchmark
+    public MatchingResult nestedObject(NestedState state) {
+        return matcher.compare(state.expected, state.actual);
+    }
+
+    @Benchmark
+    public MatchingResult ignoreHeavyObject(ObjectState state) {
+        return matcher.compare(state.expected, state.actual, state.ignored);
+    }
+
+    @Benchmark
+    public MatchingResult objectArray(ArrayState state) {
+        return matcher.compare(state.expected, state.actual);
+    }
+
+    @Benchmark
+    public MatchingResult objectArrayWithBusinessKey(ArrayState state) {
+        return matcher.compare(state.expected, state.actual, new HashMap<>(), state.businessKey);
+    }
+
+    @Benchmark
+    public MatchingResult primitiveArray(ArrayState state) {
+        return matcher.compare(state.expectedPrimitives, state.actualPrimitives);
+    }
+}
@@ -0,0 +1,124 @@
+package com.rags.tools.matcher.benchmark;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates deterministic expected/actual workloads for the benchmarks.
+ * Every actual payload is derived from its expected payload with a small, fixed share of mutations so that
+ * the matcher has to do real work while still finding most elements.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class Payloads {
+
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "INR", "JPY"};
+    private static final String[] BOOKS = {"RATES", "CREDIT", "FX", "EQUITY"};
+
+    private Payloads() {
+    }
+
+    static JsonObject flatObject(Random random, int fields) {
+        JsonObject obj = new JsonObject();
+        for (int i = 0; i < fields; i++) {
+            switch (i % 4) {
+                case 0:
+                    obj.put("str" + i, "value-" + random.nextInt(1000));
+                    break;
+                case 1:
+                    obj.put("int" + i, random.nextInt(100000));
+                    break;
+                case 2:
+                    obj.put("dbl" + i, random.nextDouble());
+                    break;
+                default:
+                    obj.put("bool" + i, random.nextBoolean());
+            }
+        }
+        return obj;
+    }
+
+    static JsonObject nestedObject(Random random, int depth, int fieldsPerLevel) {
+        JsonObject obj = flatObject(random, fieldsPerLevel);
+        if (depth > 0) {
+            obj.put("child", nestedObject(random, depth - 1, fieldsPerLevel));
+        }
+        return obj;
+    }
+
+    static JsonObject trade(Random random, int tradeId) {
+        return new JsonObject()
+                .put("tradeId", tradeId)
+                .put("book", BOOKS[random.nextInt(BOOKS.length)])
+                .put("ccy", CURRENCIES[random.nextInt(CURRENCIES.length)])
+                .put("qty", random.nextInt(1_000_000))
+                .put("price", Math.round(random.nextDouble() * 10_000) / 100.0)
+                .put("settled", random.nextBoolean());
+    }
+
+    static JsonArray tradeArray(Random random, int size) {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < size; i++) {
+            array.add(trade(random, i));
+        }
+        return array;
+    }
+
+    static JsonArray primitiveArray(Random random, int size) {
+        JsonArray array = new JsonArray();
+        for (int i = 0; i < size; i++) {
+            array.add(random.nextInt(size * 10));
+        }
+        return array;
+    }
+
+    static Map<String, Object> ignoreEveryOther(JsonObject obj) {
+        Map<String, Object> ignored = new HashMap<>();
+        int i = 0;
+        for (String field : obj.fieldNames()) {
+            if (i++ % 2 == 0) {
+                ignored.put(field, true);
+            }
+        }
+        return ignored;
+    }
+
+    /**
+     * Copies the object and changes roughly {@code mutationRate} of its leaf values.
+     */
+    static JsonObject mutate(Random random, JsonObject expected, double mutationRate) {
+        JsonObject actual = expected.copy();
+        for (String field : expected.fieldNames()) {
+            Object value = actual.getValue(field);
+            if (value instanceof JsonObject) {
+                actual.put(field, mutate(random, (JsonObject) value, mutationRate));
+            } else if (!"tradeId".equals(field) && random.nextDouble() < mutationRate) {
+                actual.put(field, value instanceof String ? value + "-changed" : String.valueOf(value));
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Mutates a share of the array elements and shuffles the order, the way two independently produced feeds differ.
+     */
+    static JsonArray mutateAndShuffle(Random random, JsonArray expected, double mutationRate) {
+        List<Object> elements = new ArrayList<>(expected.size());
+        for (Object value : expected) {
+            if (value instanceof JsonObject) {
+                elements.add(random.nextDouble() < mutationRate ? mutate(random, (JsonObject) value, 0.5) : ((JsonObject) value).copy());
+            } else {
+                elements.add(random.nextDouble() < mutationRate ? random.nextInt() : value);
+            }
+        }
+        Collections.shuffle(elements, random);
+        return new JsonArray(elements);
+    }
+}
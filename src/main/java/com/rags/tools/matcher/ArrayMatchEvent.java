@@ -0,0 +1,41 @@
+package com.rags.tools.matcher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder event of the comparison of two arrays, pairing and diff of the pairs, recorded when it takes
+ * longer than its threshold.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+@Name("com.rags.tools.matcher.ArrayMatch")
+@Label("Array Match")
+@Category("JSON Matcher")
+@Description("Comparison of two arrays")
+@Threshold("10 ms")
+@StackTrace(false)
+final class ArrayMatchEvent extends Event {
+
+    @Label("Path")
+    @Description("JSON Pointer of the expected array, null unless the comparison tracks paths")
+    String path;
+
+    @Label("Expected Size")
+    int expectedSize;
+
+    @Label("Actual Size")
+    int actualSize;
+
+    @Label("Algorithm")
+    @Description("K when elements are paired on business keys, M for best count matching")
+    String algo;
+
+    @Label("Status")
+    String status;
+}
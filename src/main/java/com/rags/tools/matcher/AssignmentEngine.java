@@ -0,0 +1,275 @@
+package com.rags.tools.matcher;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+
+/**
+ * Assigns expected array elements (rows) to actual array elements (columns) from a precomputed score matrix.
+ * <p>
+ * Rows are sparse: row {@code r} only holds its candidate columns {@code columns[r]}, in ascending order, and their
+ * scores {@code scores[r]}, the way a business key index or the identical pairing leaves them. Scores are built with
+ * {@link #score(MatchingStatus, Integer)}, a higher score is a better pair. Claimed columns are tracked in a BitSet.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class AssignmentEngine {
+
+    /**
+     * Score of a pair that must never be assigned, a business key mismatch.
+     */
+    static final int NOT_ASSIGNABLE = Integer.MIN_VALUE;
+
+    private static final int CLASS_SHIFT = 28;
+    private static final int VALUE_MASK = (1 << CLASS_SHIFT) - 1;
+    private static final int PASSING = 3;
+    private static final int KEY_MATCHING = 2;
+    private static final int OTHER = 1;
+
+    private AssignmentEngine() {
+    }
+
+    /**
+     * Passing pairs come first, then business key pairs with more matching attributes first, then the rest with
+     * fewer matching attributes first, which is the order the best count matching has always used.
+     */
+    static int score(MatchingStatus status, Integer count) {
+        int matching = count == null ? 0 : Math.min(Math.max(count, 0), VALUE_MASK);
+        switch (status) {
+            case P:
+                return PASSING << CLASS_SHIFT;
+            case PK:
+                return KEY_MATCHING << CLASS_SHIFT | matching;
+            case NE:
+                return NOT_ASSIGNABLE;
+            default:
+                return OTHER << CLASS_SHIFT | VALUE_MASK - matching;
+        }
+    }
+
+    static boolean isPassing(int score) {
+        return score != NOT_ASSIGNABLE && score >>> CLASS_SHIFT == PASSING;
+    }
+
+    /**
+     * @param columns     candidate columns of each row
+     * @param scores      score of each candidate, aligned with columns
+     * @param columnCount total number of columns
+     * @param event       if not null, records the mode that actually ran, {@link AssignmentMode#OPTIMAL} falls back to
+     *                    {@link AssignmentMode#GREEDY} above the limit
+     * @return per row, the position of the assigned candidate in {@code columns[row]}, -1 if nothing was assigned
+     */
+    static int[] assign(int[][] columns, int[][] scores, int columnCount, AssignmentMode mode, int optimalLimit, AssignmentEvent event) {
+        if (mode == AssignmentMode.OPTIMAL && columns.length <= optimalLimit) {
+            int[] optimal = assignOptimal(columns, scores, columnCount, optimalLimit);
+            if (optimal != null) {
+                if (event != null) {
+                    event.mode = AssignmentMode.OPTIMAL.name();
+                }
+                return optimal;
+            }
+        }
+        if (event != null) {
+            event.mode = AssignmentMode.GREEDY.name();
+        }
+        return assignGreedy(columns, scores, columnCount);
+    }
+
+    /**
+     * Best pair first through a priority queue holding the best unclaimed candidate of every row.
+     * When the candidate of a row is claimed in the meantime, the row moves on to its next best candidate.
+     * Ties go to the lower row, then to the lower column.
+     */
+    private static int[] assignGreedy(int[][] columns, int[][] scores, int columnCount) {
+        int rows = columns.length;
+        int[] assigned = new int[rows];
+        Arrays.fill(assigned, -1);
+
+        BitSet claimed = new BitSet(columnCount);
+        int[][] order = new int[rows][];
+        int[] next = new int[rows];
+
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Math.max(1, rows), (a, b) -> {
+            int cmp = Long.compare(b[0], a[0]);
+            return cmp != 0 ? cmp : Long.compare(a[1], b[1]);
+        });
+        for (int r = 0; r < rows; r++) {
+            int best = bestCandidate(columns[r], scores[r]);
+            if (best >= 0) {
+                queue.add(entry(r, best, scores[r][best], columns[r][best]));
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            long[] top = queue.poll();
+            int r = (int) (top[1] >>> 32);
+            int pos = (int) top[2];
+            if (!claimed.get(columns[r][pos])) {
+                claimed.set(columns[r][pos]);
+                assigned[r] = pos;
+                continue;
+            }
+
+            //Sorted lazily, only rows that lose their best candidate need the full order
+            if (order[r] == null) {
+                order[r] = sortedCandidates(columns[r], scores[r]);
+            }
+            while (next[r] < order[r].length && claimed.get(columns[r][order[r][next[r]]])) {
+                next[r]++;
+            }
+            if (next[r] < order[r].length) {
+                int nextPos = order[r][next[r]];
+                queue.add(entry(r, nextPos, scores[r][nextPos], columns[r][nextPos]));
+            }
+        }
+        return assigned;
+    }
+
+    private static long[] entry(int row, int pos, int score, int column) {
+        return new long[]{score, (long) row << 32 | column, pos};
+    }
+
+    private static int bestCandidate(int[] columns, int[] scores) {
+        //Strictly better only, so ties keep the lower column
+        int best = -1;
+        for (int i = 0; i < columns.length; i++) {
+            if (scores[i] != NOT_ASSIGNABLE && (best < 0 || scores[i] > scores[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int[] sortedCandidates(int[] columns, int[] scores) {
+        long[] packed = new long[columns.length];
+        int size = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (scores[i] != NOT_ASSIGNABLE) {
+                //score descending, then position ascending which is column ascending
+                packed[size++] = (long) (Integer.MAX_VALUE - scores[i]) << 32 | i;
+            }
+        }
+        long[] sorted = Arrays.copyOf(packed, size);
+        Arrays.sort(sorted);
+
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = (int) sorted[i];
+        }
+        return positions;
+    }
+
+    /**
+     * Maximum total weight assignment with the Hungarian algorithm on a square cost matrix padded with
+     * "not assigned" cells. O(n^3) in the number of rows and distinct columns, so only for bounded sizes.
+     *
+     * @return null when there are more distinct candidate columns than the limit
+     */
+    private static int[] assignOptimal(int[][] columns, int[][] scores, int columnCount, int optimalLimit) {
+        int rows = columns.length;
+        int[] compact = new int[columnCount];
+        Arrays.fill(compact, -1);
+        int distinct = 0;
+        for (int[] row : columns) {
+            for (int column : row) {
+                if (compact[column] < 0) {
+                    compact[column] = distinct++;
+                }
+            }
+        }
+        if (distinct > optimalLimit) {
+            return null;
+        }
+
+        int n = Math.max(rows, distinct);
+        long[][] weight = new long[n][n];
+        long maxWeight = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < columns[r].length; i++) {
+                long w = weight(scores[r][i]);
+                weight[r][compact[columns[r][i]]] = w;
+                maxWeight = Math.max(maxWeight, w);
+            }
+        }
+
+        //1 based Hungarian algorithm minimising maxWeight - weight
+        long[] u = new long[n + 1];
+        long[] v = new long[n + 1];
+        int[] p = new int[n + 1];
+        int[] way = new int[n + 1];
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            long[] minv = new long[n + 1];
+            Arrays.fill(minv, Long.MAX_VALUE);
+            boolean[] used = new boolean[n + 1];
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                long delta = Long.MAX_VALUE;
+                int j1 = 0;
+                for (int j = 1; j <= n; j++) {
+                    if (!used[j]) {
+                        long cur = maxWeight - weight[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (cur < minv[j]) {
+                            minv[j] = cur;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= n; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] assigned = new int[rows];
+        Arrays.fill(assigned, -1);
+        for (int j = 1; j <= n; j++) {
+            int r = p[j] - 1;
+            if (r < rows && weight[r][j - 1] > 0) {
+                for (int i = 0; i < columns[r].length; i++) {
+                    if (compact[columns[r][i]] == j - 1) {
+                        assigned[r] = i;
+                        break;
+                    }
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Weight of a pair for the optimal assignment, unlike the greedy order more matching attributes is always better.
+     * Passing pairs weigh far more than key matching pairs, which weigh far more than the other pairs.
+     */
+    private static long weight(int score) {
+        if (score == NOT_ASSIGNABLE) {
+            return 0;
+        }
+        int value = score & VALUE_MASK;
+        switch (score >>> CLASS_SHIFT) {
+            case PASSING:
+                return 1L << 46;
+            case KEY_MATCHING:
+                return (1L << 29) + value;
+            default:
+                return 1L + (VALUE_MASK - value);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.rags.tools.matcher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder event of the pairing of the elements of two arrays, recorded when it takes longer than its
+ * threshold. Arrays paired by the sorted merge or entirely by the identical pairing never reach the assignment engine
+ * and record no event.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+@Name("com.rags.tools.matcher.Assignment")
+@Label("Assignment")
+@Category("JSON Matcher")
+@Description("Scoring and assignment of the element pairs of two arrays")
+@Threshold("10 ms")
+@StackTrace(false)
+final class AssignmentEvent extends Event {
+
+    @Label("Path")
+    @Description("JSON Pointer of the expected array, null unless the comparison tracks paths")
+    String path;
+
+    @Label("Expected Size")
+    int expectedSize;
+
+    @Label("Actual Size")
+    int actualSize;
+
+    @Label("Mode")
+    @Description("Assignment mode that ran, GREEDY when OPTIMAL falls back above its limit")
+    String mode;
+}
@@ -0,0 +1,21 @@
+package com.rags.tools.matcher;
+
+/**
+ * How expected array elements are assigned to actual array elements once every candidate pair is scored.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public enum AssignmentMode {
+    /**
+     * Pairs are taken best score first: passing pairs, then business key pairs with the most matching attributes,
+     * then the remaining pairs in the historic best count order. Each actual element is claimed at most once.
+     */
+    GREEDY,
+
+    /**
+     * Pairs are chosen to maximise the total score of the array (Hungarian algorithm), preferring more matching
+     * attributes. Only used up to {@link MatchOptions#getOptimalAssignmentLimit()} elements, larger arrays fall back to
+     * {@link #GREEDY}.
+     */
+    OPTIMAL
+}
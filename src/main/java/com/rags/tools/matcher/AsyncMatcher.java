@@ -0,0 +1,133 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs comparisons off the calling thread, so that an event loop never waits for a large compare.
+ * Cancelling the returned future stops the comparison at its next nested object or array, through the cancellation of
+ * a {@link CompareBudget}. A comparison cancelled before it starts never runs. Cancellation alone neither tracks the
+ * depth nor keeps the comparison from the {@link ComparisonCache} of the options.
+ *
+ * <pre>
+ * try (AsyncMatcher async = AsyncMatcher.onVirtualThreads(new JsonMatcher(), 8)) {
+ *     async.compareAsync(vertx.getOrCreateContext(), expected, actual, spec).setHandler(res -&gt; ...);
+ * }
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public class AsyncMatcher implements AutoCloseable {
+
+    private final JsonMatcher matcher;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * @param executor executor the comparisons run on, it is not shut down by {@link #close()}
+     */
+    public AsyncMatcher(JsonMatcher matcher, Executor executor) {
+        this(matcher, executor, false);
+    }
+
+    private AsyncMatcher(JsonMatcher matcher, Executor executor, boolean ownsExecutor) {
+        if (executor == null) {
+            throw new RuntimeException("Executor is required.");
+        }
+        this.matcher = matcher == null ? new JsonMatcher() : matcher;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Runs every comparison on a virtual thread of its own on JDK 21 and later, on a bounded pool of daemon threads on
+     * older JDKs. The executor is shut down by {@link #close()}.
+     *
+     * @param fallbackThreads size of the pool used when virtual threads are not available
+     */
+    public static AsyncMatcher onVirtualThreads(JsonMatcher matcher, int fallbackThreads) {
+        return new AsyncMatcher(matcher, virtualThreadExecutor(fallbackThreads), true);
+    }
+
+    public CompletableFuture<MatchingResult> compareAsync(Object expected, Object actual, MatchSpec spec) {
+        return compareAsync(expected, actual, spec, null);
+    }
+
+    /**
+     * @param budget limits of the comparison, null for none. Cancelling the future cancels the comparison in any case
+     */
+    public CompletableFuture<MatchingResult> compareAsync(Object expected, Object actual, MatchSpec spec, CompareBudget budget) {
+        CompletableFuture<MatchingResult> future = new CompletableFuture<>();
+        BooleanSupplier cancellation = budget == null ? null : budget.getCancellation();
+        CompareBudget cancellable = (budget == null ? new CompareBudget.Builder() : budget.newBuilder())
+                .setCancellation(cancellation == null ? future::isCancelled : () -> future.isCancelled() || cancellation.getAsBoolean())
+                .create();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(matcher.compare(expected, actual, spec, cancellable));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Same as {@link #compareAsync(Object, Object, MatchSpec)}, the Vert.x future is completed on the given context,
+     * e.g. the event loop the comparison was asked from.
+     */
+    public Future<MatchingResult> compareAsync(Context context, Object expected, Object actual, MatchSpec spec) {
+        Promise<MatchingResult> promise = Promise.promise();
+        compareAsync(expected, actual, spec).whenComplete((result, error) -> context.runOnContext(v -> {
+            if (error == null) {
+                promise.complete(result);
+            } else {
+                promise.fail(error);
+            }
+        }));
+        return promise.future();
+    }
+
+    /**
+     * Shuts down the executor if it was created by {@link #onVirtualThreads(JsonMatcher, int)}.
+     * Comparisons already submitted still complete.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private static ExecutorService virtualThreadExecutor(int fallbackThreads) {
+        try {
+            //Looked up reflectively, the jar still runs on JDK 11
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newFixedThreadPool(fallbackThreads, task -> {
+                Thread thread = new Thread(task, "json-matcher-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
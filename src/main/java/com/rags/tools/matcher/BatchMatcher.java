@@ -0,0 +1,215 @@
+package com.rags.tools.matcher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Compares many expected/actual pairs with one {@link MatchSpec} and one {@link Matcher}, spreading them over an
+ * executor. At most {@code maxInFlight} pairs are compared or waiting to be delivered at any time, so a batch read
+ * lazily from a file or a stream (pass {@code stream::iterator}) is never held in memory as a whole.
+ * The sink is called by one thread at a time, in batch order or as pairs complete.
+ *
+ * <pre>
+ * BatchStats stats = new BatchMatcher(new JsonMatcher(), executor, 64)
+ *         .compareAll(pairs, spec, false, (index, result) -&gt; writer.write(index, result));
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public class BatchMatcher {
+
+    private static final int SLOWEST = 10;
+
+    private final Matcher matcher;
+    private final Executor executor;
+    private final int maxInFlight;
+
+    /**
+     * Compares the pairs on the calling thread.
+     */
+    public BatchMatcher(Matcher matcher) {
+        this(matcher, null, 1);
+    }
+
+    /**
+     * @param executor    executor the pairs are compared on, null to compare them on the calling thread
+     * @param maxInFlight max number of pairs submitted and not delivered yet
+     */
+    public BatchMatcher(Matcher matcher, Executor executor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new RuntimeException("At least one pair must be allowed in flight.");
+        }
+        this.matcher = matcher == null ? new JsonMatcher() : matcher;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return results in batch order
+     */
+    public List<MatchingResult> compareAll(Iterable<ComparePair> pairs, MatchSpec spec) {
+        List<MatchingResult> results = new ArrayList<>();
+        compareAll(pairs, spec, true, (index, result) -> results.add(result));
+        return results;
+    }
+
+    /**
+     * @param ordered true to deliver the results in batch order, false to deliver them as they complete
+     * @param sink    receives every result with the position of its pair in the batch
+     * @throws RuntimeException once the pairs in flight are done, if comparing any pair failed. Errors are rethrown
+     *                          on the thread they happen on, on the executor they also fail the batch.
+     */
+    public BatchStats compareAll(Iterable<ComparePair> pairs, MatchSpec spec, boolean ordered, ResultSink sink) {
+        Batch batch = new Batch(spec == null ? MatchSpec.EMPTY : spec, ordered, sink);
+        long start = System.nanoTime();
+        long index = 0;
+        for (ComparePair pair : pairs) {
+            if (batch.failure != null) {
+                break;
+            }
+            batch.permits.acquireUninterruptibly();
+            long pairIndex = index++;
+            if (executor == null) {
+                batch.compare(pairIndex, pair);
+            } else {
+                try {
+                    executor.execute(() -> batch.compare(pairIndex, pair));
+                } catch (RuntimeException e) {
+                    batch.fail(pairIndex, e);
+                    break;
+                }
+            }
+        }
+
+        //Every permit is back once the pairs in flight are delivered
+        batch.permits.acquireUninterruptibly(maxInFlight);
+        batch.permits.release(maxInFlight);
+        if (batch.failure != null) {
+            throw batch.failure;
+        }
+        return batch.stats(System.nanoTime() - start);
+    }
+
+    /**
+     * Receives the result of every pair of a batch.
+     */
+    @FunctionalInterface
+    public interface ResultSink {
+        /**
+         * @param index position of the pair in the batch
+         */
+        void accept(long index, MatchingResult result);
+    }
+
+    /**
+     * State of a single call of {@link #compareAll(Iterable, MatchSpec, boolean, ResultSink)}.
+     */
+    private final class Batch {
+        private final MatchSpec spec;
+        private final boolean ordered;
+        private final ResultSink sink;
+        private final Semaphore permits = new Semaphore(maxInFlight);
+
+        //Guarded by this: results waiting for the ones before them, stats and the slowest pairs
+        private final Map<Long, MatchingResult> waiting = new HashMap<>();
+        private final PriorityQueue<BatchStats.Timing> slowest = new PriorityQueue<>(Comparator.comparing(BatchStats.Timing::getDuration));
+        private long next;
+        private long count;
+        private long passCount;
+
+        private volatile RuntimeException failure;
+
+        private Batch(MatchSpec spec, boolean ordered, ResultSink sink) {
+            this.spec = spec;
+            this.ordered = ordered;
+            this.sink = sink;
+        }
+
+        private void compare(long index, ComparePair pair) {
+            MatchingResult result;
+            long start = System.nanoTime();
+            try {
+                result = matcher.compare(pair.getExpected(), pair.getActual(), spec);
+            } catch (RuntimeException e) {
+                fail(index, e);
+                return;
+            } catch (Error e) {
+                //Failed and completed first, a pair that never completes would leave compareAll waiting for its permit
+                fail(index, e);
+                throw e;
+            }
+            deliver(index, result, System.nanoTime() - start);
+        }
+
+        private synchronized void deliver(long index, MatchingResult result, long nanos) {
+            count++;
+            if (result.getStatus() == MatchingStatus.P) {
+                passCount++;
+            }
+            slowest.add(new BatchStats.Timing(index, Duration.ofNanos(nanos)));
+            if (slowest.size() > SLOWEST) {
+                slowest.poll();
+            }
+
+            complete(index, result);
+        }
+
+        private synchronized void fail(long index, Throwable cause) {
+            if (failure == null) {
+                failure = new RuntimeException("Comparing pair " + index + " failed.", cause);
+            }
+            complete(index, null);
+        }
+
+        /**
+         * Hands the result to the sink, once the results before it are delivered if ordered.
+         */
+        private void complete(long index, MatchingResult result) {
+            if (!ordered) {
+                accept(index, result);
+                return;
+            }
+            waiting.put(index, result);
+            while (waiting.containsKey(next)) {
+                //Moved on first, the results after an error thrown by the sink are still counted
+                long delivered = next++;
+                accept(delivered, waiting.remove(delivered));
+            }
+        }
+
+        private void accept(long index, MatchingResult result) {
+            try {
+                //After a failure results are only counted, a failed pair has no result
+                if (failure == null && result != null) {
+                    sink.accept(index, result);
+                }
+            } catch (RuntimeException e) {
+                failDelivery(index, e);
+            } catch (Error e) {
+                failDelivery(index, e);
+                throw e;
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void failDelivery(long index, Throwable cause) {
+            if (failure == null) {
+                failure = new RuntimeException("Delivering the result of pair " + index + " failed.", cause);
+            }
+        }
+
+        private synchronized BatchStats stats(long nanos) {
+            List<BatchStats.Timing> timings = new ArrayList<>(slowest);
+            timings.sort(Comparator.comparing(BatchStats.Timing::getDuration).reversed());
+            return new BatchStats(count, passCount, Duration.ofNanos(nanos), timings);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.rags.tools.matcher;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Aggregated outcome of a batch of comparisons, see {@link BatchMatcher}.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class BatchStats {
+
+    private final long count;
+    private final long passCount;
+    private final Duration elapsed;
+    private final List<Timing> slowest;
+
+    BatchStats(long count, long passCount, Duration elapsed, List<Timing> slowest) {
+        this.count = count;
+        this.passCount = passCount;
+        this.elapsed = elapsed;
+        this.slowest = slowest;
+    }
+
+    /**
+     * @return number of pairs compared
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return number of pairs with status {@link MatchingStatus#P}
+     */
+    public long getPassCount() {
+        return passCount;
+    }
+
+    /**
+     * @return number of pairs with any other status
+     */
+    public long getFailCount() {
+        return count - passCount;
+    }
+
+    /**
+     * @return wall clock time of the whole batch
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return pairs compared per second
+     */
+    public double getThroughput() {
+        return elapsed.isZero() ? 0 : count * 1e9 / elapsed.toNanos();
+    }
+
+    /**
+     * @return the slowest pairs, slowest first
+     */
+    public List<Timing> getSlowest() {
+        return slowest;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchStats{count=" + count + ", passCount=" + passCount + ", elapsed=" + elapsed + ", slowest=" + slowest + '}';
+    }
+
+    /**
+     * Time a single pair took to compare.
+     */
+    public static final class Timing {
+        private final long index;
+        private final Duration duration;
+
+        Timing(long index, Duration duration) {
+            this.index = index;
+            this.duration = duration;
+        }
+
+        /**
+         * @return position of the pair in the batch
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return index + "=" + duration;
+        }
+    }
+}
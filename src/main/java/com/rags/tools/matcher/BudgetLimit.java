@@ -0,0 +1,28 @@
+package com.rags.tools.matcher;
+
+/**
+ * Limit of a {@link CompareBudget} that stopped a comparison, see {@link MatchingResult#getTruncated()}.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public enum BudgetLimit {
+    /**
+     * Enough differences were found, the values left are not compared.
+     */
+    MAX_DIFFS,
+
+    /**
+     * Objects and arrays nested deeper than the budget allows are not compared, the rest of the document is.
+     */
+    MAX_DEPTH,
+
+    /**
+     * The comparison ran out of time, the values left are not compared.
+     */
+    DEADLINE,
+
+    /**
+     * The comparison was cancelled, the values left are not compared.
+     */
+    CANCELLED
+}
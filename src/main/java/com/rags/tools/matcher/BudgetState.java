@@ -0,0 +1,79 @@
+package com.rags.tools.matcher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * What a single comparison has spent of its {@link CompareBudget}. Shared by the rows of arrays compared in parallel.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class BudgetState {
+
+    private final int maxDiffs;
+    private final int maxDepth;
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final BooleanSupplier cancellation;
+
+    private final AtomicInteger diffs = new AtomicInteger();
+    private volatile BudgetLimit stopped;
+    private volatile boolean depthReached;
+
+    BudgetState(CompareBudget budget) {
+        this.maxDiffs = budget.getMaxDiffs();
+        this.maxDepth = budget.getMaxDepth();
+        this.hasDeadline = budget.getTimeout() != null;
+        this.deadline = hasDeadline ? System.nanoTime() + budget.getTimeout().toNanos() : 0;
+        this.cancellation = budget.getCancellation();
+    }
+
+    /**
+     * @return true once no more values may be compared, checks the deadline and the cancellation
+     */
+    boolean isStopped() {
+        if (stopped != null) {
+            return true;
+        }
+        if (cancellation != null && cancellation.getAsBoolean()) {
+            stopped = BudgetLimit.CANCELLED;
+        } else if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            stopped = BudgetLimit.DEADLINE;
+        }
+        return stopped != null;
+    }
+
+    /**
+     * @return true if an object or array at this depth is not to be compared
+     */
+    boolean isTooDeep(int depth) {
+        if (depth > maxDepth) {
+            depthReached = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the budget limits the depth, which needs every level walked to notice that it is reached
+     */
+    boolean limitsDepth() {
+        return maxDepth != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Counts a differing value, the comparison stops once the max diffs are reached.
+     */
+    void recordDiff() {
+        if (diffs.incrementAndGet() >= maxDiffs && stopped == null) {
+            stopped = BudgetLimit.MAX_DIFFS;
+        }
+    }
+
+    /**
+     * @return the limit that truncated the comparison, null if it ran to the end
+     */
+    BudgetLimit getLimit() {
+        return stopped != null ? stopped : depthReached ? BudgetLimit.MAX_DEPTH : null;
+    }
+}
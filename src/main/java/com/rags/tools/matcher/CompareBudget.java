@@ -0,0 +1,110 @@
+package com.rags.tools.matcher;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounds the work of a single comparison, so that one pathological payload can not pin a thread.
+ * Once a limit is reached the comparison stops cleanly: values it did not get to are reported
+ * {@link MatchingStatus#TR} and the top level result tells which limit was hit, see {@link MatchingResult#getTruncated()}.
+ * A budget holds no state of its own and can be shared by any number of comparisons.
+ *
+ * <pre>
+ * MatchingResult result = new JsonMatcher().compare(expected, actual, spec, new CompareBudget.Builder()
+ *         .setMaxDiffs(100)
+ *         .setTimeout(Duration.ofMillis(50))
+ *         .create());
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class CompareBudget {
+
+    private final int maxDiffs;
+    private final int maxDepth;
+    private final Duration timeout;
+    private final BooleanSupplier cancellation;
+
+    private CompareBudget(Builder builder) {
+        this.maxDiffs = builder.maxDiffs;
+        this.maxDepth = builder.maxDepth;
+        this.timeout = builder.timeout;
+        this.cancellation = builder.cancellation;
+    }
+
+    /**
+     * @return number of differing values after which the comparison stops, {@link Integer#MAX_VALUE} for no limit
+     */
+    public int getMaxDiffs() {
+        return maxDiffs;
+    }
+
+    /**
+     * @return deepest nesting level compared, the top level object or array being 0. {@link Integer#MAX_VALUE} for no limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return wall clock time a comparison may take from its start, null for no limit
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return polled while comparing, the comparison stops once it returns true. null if it can not be cancelled
+     */
+    public BooleanSupplier getCancellation() {
+        return cancellation;
+    }
+
+    public Builder newBuilder() {
+        return new Builder()
+                .setMaxDiffs(maxDiffs)
+                .setMaxDepth(maxDepth)
+                .setTimeout(timeout)
+                .setCancellation(cancellation);
+    }
+
+    public static class Builder {
+        private int maxDiffs = Integer.MAX_VALUE;
+        private int maxDepth = Integer.MAX_VALUE;
+        private Duration timeout;
+        private BooleanSupplier cancellation;
+
+        public Builder setMaxDiffs(int maxDiffs) {
+            this.maxDiffs = maxDiffs;
+            return this;
+        }
+
+        public Builder setMaxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        public Builder setTimeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param cancellation e.g. {@code cancelled::get} of an AtomicBoolean, or {@code future::isCancelled}
+         */
+        public Builder setCancellation(BooleanSupplier cancellation) {
+            this.cancellation = cancellation;
+            return this;
+        }
+
+        public CompareBudget create() {
+            if (maxDiffs < 1) {
+                throw new RuntimeException("Max diffs must be at least 1.");
+            }
+            if (maxDepth < 0) {
+                throw new RuntimeException("Max depth can not be negative.");
+            }
+            return new CompareBudget(this);
+        }
+    }
+}
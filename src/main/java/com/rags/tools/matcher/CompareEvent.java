@@ -0,0 +1,38 @@
+package com.rags.tools.matcher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder event of a comparison, recorded when it takes longer than its threshold.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+@Name("com.rags.tools.matcher.Compare")
+@Label("Compare")
+@Category("JSON Matcher")
+@Description("Comparison of two documents")
+@Threshold("20 ms")
+@StackTrace(false)
+final class CompareEvent extends Event {
+
+    @Label("Expected Size")
+    @Description("Fields or elements at the root of the expected document if it is an object, array, map or collection, 0 otherwise")
+    int expectedSize;
+
+    @Label("Actual Size")
+    @Description("Fields or elements at the root of the actual document if it is an object, array, map or collection, 0 otherwise")
+    int actualSize;
+
+    @Label("Spec")
+    @Description("Identity of the spec, the same for every comparison with the same spec instance")
+    String spec;
+
+    @Label("Status")
+    String status;
+}
@@ -0,0 +1,29 @@
+package com.rags.tools.matcher;
+
+/**
+ * Expected and actual Objects to compare, one item of a batch, see {@link BatchMatcher}.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class ComparePair {
+
+    private final Object expected;
+    private final Object actual;
+
+    public ComparePair(Object expected, Object actual) {
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public static ComparePair of(Object expected, Object actual) {
+        return new ComparePair(expected, actual);
+    }
+
+    public Object getExpected() {
+        return expected;
+    }
+
+    public Object getActual() {
+        return actual;
+    }
+}
@@ -0,0 +1,200 @@
+package com.rags.tools.matcher;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of passing comparisons shared across calls, see {@link MatchOptions.Builder#setComparisonCache}.
+ * Objects and arrays are looked up by the 128 bit {@link StructuralHash} of their expected and actual values and by
+ * their spec, compared by value so that specs compiled on every call still hit, at every nesting level, so repeated
+ * reference data or line items are compared once. Each comparison hashes its documents once, bottom up, the nested
+ * levels look up the hashes computed for the top level.
+ * <p>
+ * Only passing results without ignored attributes are cached: they hold neither values nor element indexes, so they
+ * are the same wherever the pair is found. Failing pairs are compared every time. Cached results are shared by every
+ * comparison hitting them, so they are read-only.
+ * <p>
+ * Entries are evicted least recently used first, per segment, once the entry count or the total weight (the number of
+ * attribute results an entry holds, plus one) reaches its maximum.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class ComparisonCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private ComparisonCache(Builder builder) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, builder.maximumSize / SEGMENTS), Math.max(1, builder.maximumWeight / SEGMENTS));
+        }
+    }
+
+    /**
+     * @param sparse true for results of sparse matchers, which leave passing attributes out
+     * @return read-only result, null on a miss
+     */
+    MatchingResult get(StructuralHash expHash, StructuralHash actHash, MatchSpec spec, boolean sparse) {
+        Key key = new Key(expHash, actHash, spec, sparse);
+        MatchingResult result = segment(key).get(key);
+        (result == null ? misses : hits).increment();
+        return result;
+    }
+
+    /**
+     * @return the read-only result the cache holds, to be used in place of the given one
+     */
+    MatchingResult put(StructuralHash expHash, StructuralHash actHash, MatchSpec spec, boolean sparse, MatchingResult result) {
+        Key key = new Key(expHash, actHash, spec, sparse);
+        MatchingResult readOnly = result.readOnly();
+        segment(key).put(key, readOnly, 1 + (result.getDiff() == null ? 0 : result.getDiff().size()));
+        return readOnly;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return share of the lookups that hit, 0 before any lookup
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segment(Key key) {
+        return segments[(key.hashCode() >>> 16 ^ key.hashCode()) & SEGMENTS - 1];
+    }
+
+    public static class Builder {
+        private long maximumSize = 100_000;
+        private long maximumWeight = 1_000_000;
+
+        public Builder setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder setMaximumWeight(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public ComparisonCache create() {
+            if (maximumSize < 1 || maximumWeight < 1) {
+                throw new RuntimeException("Maximum size and weight must be at least 1.");
+            }
+            return new ComparisonCache(this);
+        }
+    }
+
+    /**
+     * Access ordered part of the cache under a lock of its own.
+     */
+    private final class Segment {
+        private final long maximumSize;
+        private final long maximumWeight;
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+
+        private Segment(long maximumSize, long maximumWeight) {
+            this.maximumSize = maximumSize;
+            this.maximumWeight = maximumWeight;
+        }
+
+        private synchronized MatchingResult get(Key key) {
+            Entry entry = entries.get(key);
+            return entry == null ? null : entry.result;
+        }
+
+        private synchronized void put(Key key, MatchingResult result, int entryWeight) {
+            if (entryWeight > maximumWeight) {
+                return;
+            }
+            Entry previous = entries.put(key, new Entry(result, entryWeight));
+            weight += entryWeight - (previous == null ? 0 : previous.weight);
+            for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext() && (entries.size() > maximumSize || weight > maximumWeight); ) {
+                weight -= it.next().getValue().weight;
+                it.remove();
+                evictions.increment();
+            }
+        }
+
+        private synchronized int size() {
+            return entries.size();
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    private static final class Entry {
+        private final MatchingResult result;
+        private final int weight;
+
+        private Entry(MatchingResult result, int weight) {
+            this.result = result;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Key {
+        private final StructuralHash expHash;
+        private final StructuralHash actHash;
+        private final MatchSpec spec;
+        private final boolean sparse;
+
+        private Key(StructuralHash expHash, StructuralHash actHash, MatchSpec spec, boolean sparse) {
+            this.expHash = expHash;
+            this.actHash = actHash;
+            this.spec = spec;
+            this.sparse = sparse;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return expHash.equals(key.expHash) && actHash.equals(key.actHash) && spec.equals(key.spec) && sparse == key.sparse;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((expHash.hashCode() * 31 + actHash.hashCode()) * 31 + spec.hashCode()) * 31 + (sparse ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.rags.tools.matcher;
+
+/**
+ * Receives the differences of a comparison as they are found, see {@link JsonMatcher#report}.
+ * Paths are JSON Pointers (RFC 6901) into the expected document, into the actual document for new values.
+ * Callbacks come from the calling thread, in document order, objects and arrays being entered before their
+ * differences and exited once their status is final. Attributes come in the order of the expected document, missing
+ * ones in their place, then the new attributes in the order of the actual document. Array elements come in the order
+ * of the expected array, then the new elements in the order of the actual array.
+ *
+ * <pre>
+ * matcher.report(expected, actual, spec, (path, status, exp, act) -&gt; writer.println(path + " " + status));
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+@FunctionalInterface
+public interface DiffListener {
+
+    /**
+     * A value that does not pass: a failing, missing, new, mismatching, ignored or truncated value. Objects and arrays
+     * compared value by value are reported through their own differences and {@link #exitObject}/{@link #exitArray}.
+     *
+     * @param expected expected value, null if it is new
+     * @param actual   actual value, null if it is missing
+     */
+    void onDiff(String path, MatchingStatus status, Object expected, Object actual);
+
+    default void enterObject(String path) {
+    }
+
+    /**
+     * @param status status of the whole object, {@link MatchingStatus#PK} or {@link MatchingStatus#NE} with business keys
+     */
+    default void exitObject(String path, MatchingStatus status) {
+    }
+
+    default void enterArray(String path) {
+    }
+
+    default void exitArray(String path, MatchingStatus status) {
+    }
+}
@@ -0,0 +1,191 @@
+package com.rags.tools.matcher;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Writes the differences reported by {@link JsonMatcher#report} straight to a stream, without any result tree and
+ * without reflection.
+ * <ul>
+ * <li>{@link Format#JSON_PATCH}: a JSON Patch (RFC 6902) turning the expected document into the actual one. Array
+ * elements are paired by best matching, so the patch leaves the order of the array elements as in the expected
+ * document: missing elements are removed from the highest index down and new elements are appended.
+ * Ignored and truncated values have no operation.</li>
+ * <li>{@link Format#NDJSON}: one {@code {"path", "status", "exp", "act"}} line per difference, values left out when null.</li>
+ * </ul>
+ * Both follow the order of the {@link DiffListener} callbacks, so the same documents always give the same output.
+ *
+ * <pre>
+ * try (DiffWriter writer = new DiffWriter(out, DiffWriter.Format.JSON_PATCH)) {
+ *     matcher.report(expected, actual, spec, writer);
+ * }
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class DiffWriter implements DiffListener, Closeable {
+
+    public enum Format {
+        JSON_PATCH, NDJSON
+    }
+
+    private final JsonGenerator generator;
+    private final Format format;
+    //Operations of the patch when they are added to an array instead of being written
+    private final JsonArray patch;
+
+    //Objects and arrays entered with their expected pointer, arrays hold the elements to remove once they are exited
+    private final Deque<Level> levels = new ArrayDeque<>();
+
+    /**
+     * @param out stream to write to, closed with the writer
+     */
+    public DiffWriter(OutputStream out, Format format) throws IOException {
+        if (format == null) {
+            throw new RuntimeException("Format is required.");
+        }
+        this.generator = Json.mapper.getFactory().createGenerator(out);
+        this.format = format;
+        this.patch = null;
+        generator.setRootValueSeparator(null);
+        if (format == Format.JSON_PATCH) {
+            generator.writeStartArray();
+        }
+    }
+
+    /**
+     * Adds the operations of the JSON Patch to the array as they are found, without writing nor parsing any bytes.
+     */
+    DiffWriter(JsonArray patch) {
+        this.generator = null;
+        this.format = Format.JSON_PATCH;
+        this.patch = patch;
+    }
+
+    @Override
+    public void onDiff(String path, MatchingStatus status, Object expected, Object actual) {
+        try {
+            if (format == Format.NDJSON) {
+                writeLine(path, status, expected, actual);
+                return;
+            }
+
+            boolean inArray = !levels.isEmpty() && levels.peek().removes != null;
+            switch (status) {
+                case NE:
+                    if (inArray) {
+                        levels.peek().removes.add(path);
+                    } else {
+                        writeOperation("remove", path, null);
+                    }
+                    break;
+                case NW:
+                    //The pointer of a new element is in the actual document, the array is appended to where the patch has it
+                    writeOperation("add", inArray ? levels.peek().path + "/-" : path, actual);
+                    break;
+                case F:
+                case OM:
+                    writeOperation("replace", path, actual);
+                    break;
+                default:
+                    //Ignored and truncated values are left as they are
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void enterObject(String path) {
+        levels.push(new Level(path, null));
+    }
+
+    @Override
+    public void exitObject(String path, MatchingStatus status) {
+        levels.pop();
+    }
+
+    @Override
+    public void enterArray(String path) {
+        levels.push(new Level(path, new ArrayList<>()));
+    }
+
+    @Override
+    public void exitArray(String path, MatchingStatus status) {
+        List<String> removes = levels.pop().removes;
+        try {
+            //Highest index first, so that every removal still points to its element
+            for (int i = removes.size() - 1; i >= 0; i--) {
+                writeOperation("remove", removes.get(i), null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeOperation(String op, String path, Object value) throws IOException {
+        if (patch != null) {
+            JsonObject operation = new JsonObject().put("op", op).put("path", path);
+            patch.add("remove".equals(op) ? operation : operation.put("value", value));
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("op", op);
+        generator.writeStringField("path", path);
+        if (!"remove".equals(op)) {
+            generator.writeFieldName("value");
+            generator.writeObject(value);
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeLine(String path, MatchingStatus status, Object expected, Object actual) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("path", path);
+        generator.writeStringField("status", status.name());
+        if (expected != null) {
+            generator.writeFieldName("exp");
+            generator.writeObject(expected);
+        }
+        if (actual != null) {
+            generator.writeFieldName("act");
+            generator.writeObject(actual);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * Ends the patch and flushes, closing the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (patch != null) {
+            return;
+        } else if (format == Format.JSON_PATCH) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+
+    private static final class Level {
+        private final String path;
+        private final List<String> removes;
+
+        private Level(String path, List<String> removes) {
+            this.path = path;
+            this.removes = removes;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A comparison kept alive to be brought up to date as the actual document changes, see
+ * {@link JsonMatcher#compareIncrementally(Object, Object, MatchSpec)}.
+ * Results of objects and arrays are cached by their JSON Pointers. A change drops the results of the changed value,
+ * of everything below it and of the objects and arrays above it, so comparing again only walks down the changed paths
+ * and reuses every other result as is. An array holding a change pairs its elements again, the pairs it keeps reuse
+ * their results.
+ * <p>
+ * Elements inserted into or removed from an array move the elements after them, such changes are reported as a change
+ * of the whole array. {@link #apply(JsonArray)} does it for the operations of a JSON Patch.
+ *
+ * <pre>
+ * IncrementalComparison comparison = matcher.compareIncrementally(baseline, current, spec);
+ * MatchingResult result = comparison.apply(patchOfTheTick);
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class IncrementalComparison {
+
+    private final JsonMatcher matcher;
+    private final Object expected;
+    private final MatchSpec spec;
+    private final ResultCache cache = new ResultCache();
+    private Object actual;
+    private MatchingResult result;
+
+    IncrementalComparison(JsonMatcher matcher, Object expected, Object actual, MatchSpec spec) {
+        this.matcher = matcher;
+        this.expected = tree(expected);
+        this.actual = tree(actual);
+        this.spec = spec == null ? MatchSpec.EMPTY : spec;
+        this.result = matcher.compare(this.expected, this.actual, this.spec, cache);
+    }
+
+    public MatchingResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return the actual document the changes apply to, a JSON tree copy of it if it was given as a POJO
+     */
+    public Object getActual() {
+        return actual;
+    }
+
+    /**
+     * Compares again after the actual document was changed in place.
+     *
+     * @param changedPaths JSON Pointers of the values changed in the actual document, of the array if elements were
+     *                     inserted or removed
+     */
+    public MatchingResult update(Collection<String> changedPaths) {
+        changedPaths.forEach(cache::invalidate);
+        result = matcher.compare(expected, actual, spec, cache);
+        return result;
+    }
+
+    /**
+     * Applies a JSON Patch (RFC 6902) to the actual document in place and compares again.
+     * An operation that fails leaves the ones before it applied, the next comparison accounts for them.
+     */
+    public MatchingResult apply(JsonArray patch) {
+        for (int i = 0; i < patch.size(); i++) {
+            JsonObject operation = patch.getJsonObject(i);
+            String op = operation.getString("op");
+            String path = operation.getString("path");
+            if (op == null || path == null) {
+                throw new RuntimeException("Patch operation " + i + " needs an op and a path.");
+            }
+            //Dropped as each change is made, so that the cache never outlives a change of a patch failing further on
+            switch (op) {
+                case "add":
+                    //Copied so that a later change of the patch never changes the actual document behind the cache
+                    cache.invalidate(add(path, JsonValues.copyTree(operation.getValue("value"))));
+                    break;
+                case "remove":
+                    cache.invalidate(remove(path));
+                    break;
+                case "replace":
+                    try {
+                        if (!path.isEmpty()) {
+                            remove(path);
+                        }
+                        add(path, JsonValues.copyTree(operation.getValue("value")));
+                    } finally {
+                        cache.invalidate(path);
+                    }
+                    break;
+                case "move":
+                    Object moved = ResultPath.resolve(actual, from(operation));
+                    cache.invalidate(remove(from(operation)));
+                    cache.invalidate(add(path, moved));
+                    break;
+                case "copy":
+                    cache.invalidate(add(path, JsonValues.copyTree(ResultPath.resolve(actual, from(operation)))));
+                    break;
+                case "test":
+                    if (!equal(ResultPath.resolve(actual, path), operation.getValue("value"))) {
+                        throw new RuntimeException("Patch test failed at " + path + ".");
+                    }
+                    break;
+                default:
+                    throw new RuntimeException("Unknown patch operation " + op + ".");
+            }
+        }
+        return update(Collections.emptyList());
+    }
+
+    /**
+     * @return pointer of what changed: the array the value is inserted into, the value itself otherwise
+     */
+    private String add(String path, Object value) {
+        if (path.isEmpty()) {
+            actual = tree(value);
+            return path;
+        }
+        Object parent = parent(path);
+        String token = ResultPath.unescape(path.substring(path.lastIndexOf('/') + 1));
+        if (parent instanceof JsonArray) {
+            JsonArray array = (JsonArray) parent;
+            @SuppressWarnings("unchecked")
+            List<Object> elements = array.getList();
+            elements.add("-".equals(token) ? array.size() : index(token, array.size() + 1), value);
+            return parentPath(path);
+        }
+        ((JsonObject) parent).put(token, value);
+        return path;
+    }
+
+    /**
+     * @return pointer of what changed: the array the value is removed from, the value itself otherwise
+     */
+    private String remove(String path) {
+        if (path.isEmpty()) {
+            throw new RuntimeException("The whole document can not be removed.");
+        }
+        Object parent = parent(path);
+        String token = ResultPath.unescape(path.substring(path.lastIndexOf('/') + 1));
+        if (parent instanceof JsonArray) {
+            JsonArray array = (JsonArray) parent;
+            array.getList().remove(index(token, array.size()));
+            return parentPath(path);
+        } else if (!((JsonObject) parent).containsKey(token)) {
+            throw new RuntimeException("Nothing to remove at " + path + ".");
+        }
+        ((JsonObject) parent).remove(token);
+        return path;
+    }
+
+    private Object parent(String path) {
+        Object parent = ResultPath.resolve(actual, parentPath(path));
+        if (!(parent instanceof JsonObject) && !(parent instanceof JsonArray)) {
+            throw new RuntimeException("No object or array at " + parentPath(path) + ".");
+        }
+        return parent;
+    }
+
+    private static String parentPath(String path) {
+        return path.substring(0, path.lastIndexOf('/'));
+    }
+
+    private static String from(JsonObject operation) {
+        String from = operation.getString("from");
+        if (from == null) {
+            throw new RuntimeException("Patch operation " + operation.getString("op") + " needs a from.");
+        }
+        return from;
+    }
+
+    private static int index(String token, int bound) {
+        try {
+            int index = Integer.parseInt(token);
+            if (index >= 0 && index < bound) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            //Reported below
+        }
+        throw new RuntimeException("Invalid array index " + token + ".");
+    }
+
+    private static boolean equal(Object value, Object other) {
+        if (JsonValues.isPrimitive(value) && JsonValues.isPrimitive(other)) {
+            return JsonValues.primitiveEquals(value, other);
+        }
+        return Objects.equals(value, other);
+    }
+
+    private static Object tree(Object value) {
+        if (value == null || JsonValues.isComparable(value)) {
+            return value;
+        } else if (value instanceof JsonArray || value instanceof List || value.getClass().isArray()) {
+            //POJOs are read through read-only views, the changes need a tree of their own
+            return JsonValues.isJsonTree(value) ? JsonValues.toJsonArray(value) : JsonValues.copyTree(JsonValues.toJsonArray(value));
+        }
+        return JsonValues.isJsonTree(value) ? JsonValues.toJsonObject(value) : JsonValues.copyTree(JsonValues.toJsonObject(value));
+    }
+}
@@ -1,15 +1,16 @@
 package com.rags.tools.matcher;
 
-import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import jdk.jfr.EventType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Array;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 
 /**
  * Compares two Objects and produces uniform Matching results across any kind of Objects.
@@ -24,383 +25,1171 @@ public class JsonMatcher implements Matcher {
     private static final Logger LOGGER = LoggerFactory.getLogger(JsonMatcher.class);
 
     private static final int NEG_INFINITY = Integer.MIN_VALUE;
+    private static final MatchingStatus[] STATUSES = MatchingStatus.values();
+    private static final EventType ASSIGNMENT = EventType.getEventType(AssignmentEvent.class);
+
+    private final MatchOptions options;
+    private final BudgetState budget;
+    private final DiffListener listener;
+    private final ResultCache cache;
+    private final MatchStats stats;
+    private final StructuralHash.Memo hashes;
+
+    public JsonMatcher() {
+        this(MatchOptions.DEFAULT);
+    }
+
+    public JsonMatcher(MatchOptions options) {
+        this(options, null, null, null, null, null);
+    }
+
+    private JsonMatcher(MatchOptions options, BudgetState budget, DiffListener listener, ResultCache cache, MatchStats stats) {
+        this(options, budget, listener, cache, stats, null);
+    }
+
+    private JsonMatcher(MatchOptions options, BudgetState budget, DiffListener listener, ResultCache cache, MatchStats stats, StructuralHash.Memo hashes) {
+        this.options = options == null ? MatchOptions.DEFAULT : options;
+        this.budget = budget;
+        this.listener = listener;
+        this.cache = cache;
+        this.stats = stats;
+        this.hashes = hashes;
+    }
 
     @Override
     public MatchingResult compare(Object expected, Object actual) {
-        return compare(expected, actual, new HashMap<>());
+        return compare(expected, actual, MatchSpec.EMPTY);
     }
 
     @Override
     public MatchingResult compare(Object expected, Object actual, Map<String, Object> ignored) {
-        return compare(expected, actual, ignored, new HashMap<>());
+        return compare(expected, actual, MatchSpec.compile(ignored));
     }
 
     @Override
     public MatchingResult compare(Object expected, Object actual, Map<String, Object> ignored, Map<String, Object> businessKey) {
+        return compare(expected, actual, MatchSpec.compile(ignored, businessKey));
+    }
 
-        JsonObject ignoreAttributes = validate(ignored);
-        JsonObject key = validate(businessKey);
-        //Key and Ignored shouldn't be same at any level.
-        validateKeyAndIgnored(ignoreAttributes, key);
+    @Override
+    public MatchingResult compare(Object expected, Object actual, MatchSpec spec) {
+        if (spec == null) {
+            spec = MatchSpec.EMPTY;
+        }
+        if (hashes == null && sharedCache() != null) {
+            //The documents are hashed once per comparison, nested levels reuse the hashes of the top level
+            return new JsonMatcher(options, budget, listener, cache, stats, new StructuralHash.Memo()).compare(expected, actual, spec);
+        }
+
+        CompareEvent event = new CompareEvent();
+        event.begin();
+        MatchingResult result = stats == null && options.getStatsSink() == null ? compareValues(expected, actual, spec) : compareCollecting(expected, actual, spec);
+        event.end();
+        if (event.shouldCommit()) {
+            event.expectedSize = rootSize(expected);
+            event.actualSize = rootSize(actual);
+            event.spec = Integer.toHexString(System.identityHashCode(spec));
+            event.status = result.getStatus().name();
+            event.commit();
+        }
+        return result;
+    }
+
+    MatchOptions getOptions() {
+        return options;
+    }
+
+    private MatchingResult compareCollecting(Object expected, Object actual, MatchSpec spec) {
+        JsonMatcher collecting = stats == null ? new JsonMatcher(options, budget, listener, cache, new MatchStats(), hashes) : this;
+        long start = System.nanoTime();
+        MatchingResult result = collecting.compareValues(expected, actual, spec);
+        collecting.stats.elapsed(System.nanoTime() - start);
+        if (options.getStatsSink() != null) {
+            options.getStatsSink().accept(collecting.stats);
+        }
+        return result;
+    }
+
+    /**
+     * Compares and collects where the comparison spends its work into the given stats, see {@link MatchStats}.
+     * The stats also go to the sink of the options, if any.
+     *
+     * @param stats null to compare without collecting stats
+     */
+    public MatchingResult compareWithStats(Object expected, Object actual, MatchSpec spec, MatchStats stats) {
+        return new JsonMatcher(options, null, null, null, stats).compare(expected, actual, spec);
+    }
+
+    private MatchingResult compareValues(Object expected, Object actual, MatchSpec spec) {
+        //Compact results, listeners, caches and stats need where the objects and arrays are, a depth limit needs the depth
+        ResultPath path = options.isCompactResults() || listener != null || cache != null || stats != null ? ResultPath.ROOT
+                : budget != null && budget.limitsDepth() ? ResultPath.DEPTH_ONLY : null;
 
         MatchingResult.Builder result = createStatus(MatchingStatus.P);
         if (expected == null && actual == null) {
             return result.create();
         } else if (expected == null || actual == null) {
-            return result
+            return report(values(result, expected, actual, path)
                     .setMatchingStatus(MatchingStatus.F)
-                    .setExpectedValue(expected)
-                    .setActualValue(actual)
                     .setMatchingIndex(-1)
-                    .create();
-        } else if (isPrimitive(expected) && isPrimitive(actual)) {
-            boolean isMatching = expected.equals(actual);
+                    .create(), expected, actual, path);
+        } else if (JsonValues.isPrimitive(expected) && JsonValues.isPrimitive(actual)) {
+            countLeaf();
+            boolean isMatching = JsonValues.primitiveEquals(expected, actual);
             if (!isMatching) {
-                assignStatusAndExpAct(expected, actual, result.setMatchingCount(0), MatchingStatus.F);
+                assignStatusAndExpAct(expected, actual, result.setMatchingCount(0), MatchingStatus.F, path);
             }
-            return result.create();
-        } else if (isComparable(expected) && isComparable(actual)) {
-            boolean isMatching = ((Comparable) expected).compareTo(actual) == 0;
+            return report(result.create(), expected, actual, path);
+        } else if (JsonValues.isComparable(expected) && JsonValues.isComparable(actual)) {
+            countLeaf();
+            boolean isMatching = JsonValues.comparableEquals(expected, actual);
             if (!isMatching) {
-                assignStatusAndExpAct(expected, actual, result.setMatchingCount(1), MatchingStatus.F);
+                assignStatusAndExpAct(expected, actual, result.setMatchingCount(1), MatchingStatus.F, path);
             }
-            return result.create();
+            return report(result.create(), expected, actual, path);
         }
 
         boolean isExpList = expected instanceof List || expected instanceof JsonArray;
         boolean isActList = actual instanceof List || actual instanceof JsonArray;
         if (isExpList && !isActList || !isExpList && isActList) {
-            return result
-                    .setMatchingStatus(MatchingStatus.OM)
-                    .setActualValue(actual)
-                    .setExpectedValue(expected).create();
+            return report(values(result, expected, actual, path)
+                    .setMatchingStatus(MatchingStatus.OM).create(), expected, actual, path);
         }
 
         if (isExpList) {
-            return compare(Json.encodeToBuffer(expected).toJsonArray(), Json.encodeToBuffer(actual).toJsonArray(), ignoreAttributes, key);
+            return compare(JsonValues.toJsonArray(expected), JsonValues.toJsonArray(actual), spec, path);
         }
 
-        return compare(Json.encodeToBuffer(expected).toJsonObject(), Json.encodeToBuffer(actual).toJsonObject(), ignoreAttributes, key);
+        return compare(JsonValues.toJsonObject(expected), JsonValues.toJsonObject(actual), spec, path);
     }
 
-    private void validateKeyAndIgnored(JsonObject ignoreAttributes, JsonObject key) {
-        for (String attr : key.fieldNames()) {
-            if (ignoreAttributes.containsKey(attr)) {
-                if (ignoreAttributes.getValue(attr) instanceof JsonObject && key.getValue(attr) instanceof JsonObject) {
-                    validateKeyAndIgnored((JsonObject) ignoreAttributes.getValue(attr), (JsonObject) key.getValue(attr));
-                } else if (!(ignoreAttributes.getValue(attr) instanceof JsonObject) && !(key.getValue(attr) instanceof JsonObject)) {
-                    throw new RuntimeException("Ignored attribute and Key can not be same.");
-                }
-            }
+    /**
+     * Compares within a budget. Once a limit is reached the values not compared yet are reported
+     * {@link MatchingStatus#TR} and the result tells which limit was hit, see {@link MatchingResult#getTruncated()}.
+     *
+     * @param budget null to compare without limits
+     */
+    public MatchingResult compare(Object expected, Object actual, MatchSpec spec, CompareBudget budget) {
+        if (budget == null) {
+            return compare(expected, actual, spec);
+        }
+
+        JsonMatcher bounded = new JsonMatcher(options, new BudgetState(budget), null, null, null);
+        MatchingResult result = bounded.compare(expected, actual, spec);
+        BudgetLimit limit = bounded.budget.getLimit();
+        if (limit == null) {
+            return result;
         }
+        MatchingResult.Builder truncated = result.newBuilder().setTruncated(limit);
+        truncated.setAlgo(result.getAlgo());
+        return truncated.create();
     }
 
-    private MatchingResult.Builder createStatus(MatchingStatus p) {
-        return new MatchingResult.Builder().setMatchingStatus(p);
+    /**
+     * Reports the differences to a listener as soon as each one is final instead of building the result tree, so the
+     * heap only holds the objects and arrays being compared. Elements of arrays are compared on the calling thread to
+     * keep the callbacks in document order, their pairing may still be scored in parallel.
+     *
+     * @return status of the comparison, the same as {@link #compare(Object, Object, MatchSpec)} gives
+     */
+    public MatchingStatus report(Object expected, Object actual, MatchSpec spec, DiffListener listener) {
+        if (listener == null) {
+            throw new RuntimeException("Listener is required.");
+        }
+        return new JsonMatcher(options, null, listener, null, null).compare(expected, actual, spec).getStatus();
+    }
+
+    /**
+     * Compares and keeps what is needed to compare again after the actual document changes, recomputing only the
+     * objects and arrays the change affects.
+     */
+    public IncrementalComparison compareIncrementally(Object expected, Object actual, MatchSpec spec) {
+        return new IncrementalComparison(this, expected, actual, spec);
     }
 
-    private JsonObject validate(Map<String, Object> map) {
-        if (map == null) {
-            return new JsonObject();
+    /**
+     * Compares, reusing the results of the cache for the objects and arrays it still holds and adding the others.
+     */
+    MatchingResult compare(Object expected, Object actual, MatchSpec spec, ResultCache cache) {
+        JsonMatcher cached = new JsonMatcher(options, null, null, cache, null, options.getComparisonCache() == null ? null : new StructuralHash.Memo());
+        //Converting JSON trees would walk the whole documents on every comparison
+        if (expected instanceof JsonObject && actual instanceof JsonObject) {
+            return cached.compare((JsonObject) expected, (JsonObject) actual, spec == null ? MatchSpec.EMPTY : spec, ResultPath.ROOT);
+        } else if (expected instanceof JsonArray && actual instanceof JsonArray) {
+            return cached.compare((JsonArray) expected, (JsonArray) actual, spec == null ? MatchSpec.EMPTY : spec, ResultPath.ROOT);
         }
-        JsonObject obj = JsonObject.mapFrom(map);
+        return cached.compare(expected, actual, spec);
+    }
 
-        List<String> allValidFields = obj.fieldNames().stream()
-                .filter(field -> obj.getValue(field) instanceof JsonObject && validate(obj.getJsonObject(field).getMap()) instanceof JsonObject || obj.getValue(field) instanceof Boolean).collect(Collectors.toList());
+    /**
+     * Same outcome as {@code compare(expected, actual, spec).getStatus() == MatchingStatus.P} without building any
+     * result. Stops at the first difference: sizes and field sets are checked before any value, identical array
+     * elements are paired on their hash and an array fails as soon as an element has no passing candidate.
+     */
+    @Override
+    public boolean matches(Object expected, Object actual, MatchSpec spec) {
+        if (spec == null) {
+            spec = MatchSpec.EMPTY;
+        }
 
-        if (allValidFields.size() == obj.fieldNames().size()) {
-            return obj;
+        if (expected == null && actual == null) {
+            return true;
+        } else if (expected == null || actual == null) {
+            return false;
+        } else if (JsonValues.isPrimitive(expected) && JsonValues.isPrimitive(actual)) {
+            return JsonValues.primitiveEquals(expected, actual);
+        } else if (JsonValues.isComparable(expected) && JsonValues.isComparable(actual)) {
+            return JsonValues.comparableEquals(expected, actual);
         }
 
-        throw new RuntimeException("Ignored/BusinessKey is not in correct form. It should be nested Json based on the nested Ignore/businessKeys attributes or True if its leaf level.");
+        boolean isExpList = expected instanceof List || expected instanceof JsonArray;
+        boolean isActList = actual instanceof List || actual instanceof JsonArray;
+        if (isExpList != isActList) {
+            return false;
+        } else if (isExpList) {
+            return arraysMatch(JsonValues.toJsonArray(expected), JsonValues.toJsonArray(actual), spec);
+        }
+        return objectsMatch(JsonValues.toJsonObject(expected), JsonValues.toJsonObject(actual), spec);
+    }
+
+    private MatchingResult.Builder createStatus(MatchingStatus p) {
+        if (stats != null) {
+            stats.result();
+        }
+        return new MatchingResult.Builder().setMatchingStatus(p);
     }
 
-    private MatchingResult compare(JsonArray expected, JsonArray actual, JsonObject ignoreAttributes, JsonObject businessKey) {
+    private MatchingResult compare(JsonArray expected, JsonArray actual, MatchSpec spec, ResultPath path) {
         MatchingResult.Builder result = createStatus(MatchingStatus.P);
         if (expected == null && actual == null) {
             return result.create();
         } else if (expected == null || actual == null) {
-            return result
+            return values(result, expected, actual, path)
                     .setMatchingStatus(MatchingStatus.F)
-                    .setExpectedValue(expected)
-                    .setActualValue(actual)
                     .setMatchingIndex(-1)
                     .create();
         } else if (expected.isEmpty() && actual.isEmpty()) {
             return result.create();
+        } else if (isTruncated(path)) {
+            return result.setMatchingStatus(MatchingStatus.TR).create();
+        }
+        if (stats != null) {
+            stats.visit(path);
+        }
+        MatchingResult cached = cache == null ? null : cache.get(path);
+        ComparisonCache shared = sharedCache();
+        StructuralHash expHash = shared == null ? null : StructuralHash.of(expected, spec, hashes);
+        StructuralHash actHash = shared == null ? null : StructuralHash.of(actual, spec, hashes);
+        if (cached == null && shared != null) {
+            cached = shared.get(expHash, actHash, spec, options.isSparseResults());
         }
+        if (cached != null) {
+            return cached;
+        }
+        ArrayMatchEvent event = new ArrayMatchEvent();
+        event.begin();
 
-        AtomicInteger counter = new AtomicInteger(-1);
-        List<List<MatchingResult>> crossResults = expected.stream().map(exp -> {
-            counter.set(counter.get() + 1);
-            return findBestMatchingAttrCount(exp, counter.get(), actual, ignoreAttributes, businessKey);
-        }).collect(Collectors.toList());
-        return calculateMaxMatchingAndMatch(expected, actual, crossResults, businessKey);
-    }
+        //Phase 1 scores the candidate pairs and assigns them, phase 2 builds the full diff of the assigned pairs only
+        long assignStart = stats == null ? 0 : System.nanoTime();
+        AssignmentEvent assignment = ASSIGNMENT.isEnabled() ? new AssignmentEvent() : null;
+        if (assignment != null) {
+            assignment.begin();
+        }
+        int[] assigned = assignArray(expected, actual, spec, null, assignment);
+        if (assignment != null) {
+            assignment.end();
+            //No mode means the pairs came from the sorted merge or the identical pairing, the engine did not run
+            if (assignment.mode != null && assignment.shouldCommit()) {
+                assignment.path = pointer(path);
+                assignment.expectedSize = expected.size();
+                assignment.actualSize = actual.size();
+                assignment.commit();
+            }
+        }
+        if (stats != null) {
+            stats.array(path.getExp(), expected.size(), actual.size(), System.nanoTime() - assignStart);
+        }
+        if (budget != null && budget.isStopped()) {
+            //Scoring ran out of budget, the pairs are not reliable
+            return commit(event, path, expected, actual, spec, result.setMatchingStatus(MatchingStatus.TR).create());
+        }
 
-    private MatchingResult calculateMaxMatchingAndMatch(JsonArray expected, JsonArray actual, List<List<MatchingResult>> crossResults, JsonObject businessKey) {
-        boolean[][] matrix = new boolean[expected.size()][actual.size()];
-        Map<String, MatchingResult> diffObj = new HashMap<>();
+        MatchingResult[] matched = new MatchingResult[expected.size()];
+        int passCount = 0;
+        if (listener == null) {
+            parallel(expected.size(), expected.size(), i -> {
+                if (assigned[i] >= 0) {
+                    matched[i] = compareElement(expected.getValue(i), i, actual.getValue(assigned[i]), assigned[i], spec, path);
+                }
+            });
+        } else {
+            listener.enterArray(pointer(path));
+        }
 
-        AtomicBoolean finalStatus = new AtomicBoolean(true);
-        List<List<MatchingResult>> nonMatching = new LinkedList<>();
-        crossResults.forEach(obj -> {
-            List<MatchingResult> matchingObjs = obj.stream().filter(data -> data.getStatus() == MatchingStatus.P).collect(Collectors.toList());
-            boolean matching = !matchingObjs.isEmpty();
-            finalStatus.set(finalStatus.get() && matching);
-            if (matching) {
-                blockActualColumn(matrix, matchingObjs.get(0));
-                diffObj.put(String.valueOf(obj.iterator().next().getElemIndex()), matchingObjs.get(0));
+        BitSet claimed = new BitSet(actual.size());
+        Map<String, MatchingResult> diffObj = new HashMap<>();
+        boolean finalStatus = true;
+        for (int i = 0; i < expected.size(); i++) {
+            if (assigned[i] < 0) {
+                finalStatus = false;
+                recordDiff();
+                ResultPath elemPath = path == null ? null : path.element(i, -1);
+                putResult(diffObj, String.valueOf(i), values(createStatus(MatchingStatus.NE), expected.getValue(i), null, elemPath).create(), expected.getValue(i), null, elemPath);
             } else {
-                nonMatching.add(obj);
+                if (matched[i] == null) {
+                    //Compared in document order for the listener
+                    matched[i] = compareElement(expected.getValue(i), i, actual.getValue(assigned[i]), assigned[i], spec, path);
+                }
+                finalStatus = finalStatus && matched[i].getStatus() == MatchingStatus.P;
+                claimed.set(assigned[i]);
+                if (options.isSparseResults() && isPassing(matched[i])) {
+                    passCount++;
+                } else {
+                    putResult(diffObj, String.valueOf(i), matched[i], expected.getValue(i), actual.getValue(assigned[i]), path == null ? null : path.element(i, assigned[i]));
+                }
             }
-        });
+        }
 
-        //Sort to make sure that BusinessKey matches are prioritized over non business Keys matches
-        nonMatching.sort((lsr1, lsr2) -> {
-            lsr1.sort(this::sort);
-            lsr2.sort(this::sort);
+        for (int i = claimed.nextClearBit(0); i < actual.size(); i = claimed.nextClearBit(i + 1)) {
+            recordDiff();
+            ResultPath elemPath = path == null ? null : path.element(-1, i);
+            putResult(diffObj, i + MatchingStatus.NW.name(), values(createStatus(MatchingStatus.NW), null, actual.getValue(i), elemPath).setMatchingIndex(i).setElementIndex(-1).create(), null, actual.getValue(i), elemPath);
+            finalStatus = false;
+        }
 
-            MatchingResult r1 = lsr1.iterator().next();
-            MatchingResult r2 = lsr2.iterator().next();
+        result.setMatchingStatus(finalStatus ? MatchingStatus.P : MatchingStatus.F);
+        if (!finalStatus || isIgnored(diffObj)) {
+            values(result, expected, actual, path).setDifference(diffObj);
+        }
+        if (options.isSparseResults()) {
+            result.setPassCount(passCount);
+        }
+        if (listener != null) {
+            listener.exitArray(pointer(path), result.getMatchingStatus());
+            result.setDifference(null);
+        }
+        MatchingResult created = commit(event, path, expected, actual, spec, share(shared, expHash, actHash, spec, result.create()));
+        return cache == null ? created : cache.put(path, created);
+    }
+
+    /**
+     * Pairs the elements of two arrays without building any result.
+     *
+     * @param passing    if not null, collects the expected elements whose pair passes
+     * @param assignment if not null, records the assignment mode when the elements go through the assignment engine
+     * @return per expected element, index of the actual element it is paired with or -1 if it has none
+     */
+    private int[] assignArray(JsonArray expected, JsonArray actual, MatchSpec spec, BitSet passing, AssignmentEvent assignment) {
+        //Arrays declared sorted by key are paired in one merge pass, unless they turn out not to be sorted
+        int[] merged = spec.isSortedByKey() ? SortedMerge.assign(expected, actual, spec.getKeys()) : null;
+        if (merged != null) {
+            if (passing != null) {
+                for (int i = 0; i < merged.length; i++) {
+                    if (merged[i] >= 0 && status(scoreElement(expected.getValue(i), actual.getValue(merged[i]), spec)) == MatchingStatus.P) {
+                        passing.set(i);
+                    }
+                }
+            }
+            return merged;
+        }
+
+        //Identical elements are paired first on their structural hash, only the rest goes through best matching
+        BitSet claimed = new BitSet(actual.size());
+        int[] assigned = pairIdentical(expected, actual, spec, claimed);
+        if (passing != null) {
+            for (int i = 0; i < assigned.length; i++) {
+                if (assigned[i] >= 0) {
+                    passing.set(i);
+                }
+            }
+        }
+        int pairs = claimed.cardinality();
+        if (pairs == expected.size() || pairs == actual.size()) {
+            return assigned;
+        }
+        int[] unclaimed = unclaimed(actual.size(), claimed);
+
+        //With business keys, expected elements are only compared with the actual elements carrying the same key
+        KeyIndex keyIndex = spec.hasKeys() ? KeyIndex.build(actual, spec.getKeys()) : null;
+
+        int[] rows = new int[expected.size() - pairs];
+        for (int i = 0, r = 0; i < expected.size(); i++) {
+            if (assigned[i] < 0) {
+                rows[r++] = i;
+            }
+        }
+
+        int[][] columns = new int[rows.length][];
+        long work = 0;
+        for (int r = 0; r < rows.length; r++) {
+            columns[r] = candidates(keyIndex, expected.getValue(rows[r]), unclaimed, claimed, pairs);
+            work += columns[r].length;
+        }
+        if (stats != null) {
+            stats.scored(work);
+        }
 
-            return sort(r1, r2);
+        //Score only: status and matching count of every candidate pair, no diff is allocated
+        int[][] scores = new int[rows.length][];
+        parallel(rows.length, work, r -> {
+            if (budget != null && budget.isStopped()) {
+                scores[r] = new int[0];
+                columns[r] = scores[r];
+                return;
+            }
+            Object exp = expected.getValue(rows[r]);
+            scores[r] = new int[columns[r].length];
+            for (int c = 0; c < columns[r].length; c++) {
+                long score = scoreElement(exp, actual.getValue(columns[r][c]), spec);
+                scores[r][c] = AssignmentEngine.score(status(score), count(score));
+            }
         });
 
-        nonMatching.forEach(obj -> diffObj.put(String.valueOf(obj.iterator().next().getElemIndex()), findBestMatchedItemAndPopulateMatrix(obj, matrix)));
+        int[] chosen = AssignmentEngine.assign(columns, scores, actual.size(), options.getAssignmentMode(), options.getOptimalAssignmentLimit(), assignment);
+        for (int r = 0; r < rows.length; r++) {
+            if (chosen[r] >= 0) {
+                assigned[rows[r]] = columns[r][chosen[r]];
+                if (passing != null && AssignmentEngine.isPassing(scores[r][chosen[r]])) {
+                    passing.set(rows[r]);
+                }
+            }
+        }
+        return assigned;
+    }
+
+    private int[] pairIdentical(JsonArray expected, JsonArray actual, MatchSpec spec, BitSet claimed) {
+        int[] assigned = new int[expected.size()];
+        Arrays.fill(assigned, -1);
+        if (actual.isEmpty()) {
+            return assigned;
+        }
+
+        long[] expHashes = new long[expected.size()];
+        long[] actHashes = new long[actual.size()];
+        parallel(expected.size(), expected.size(), i -> expHashes[i] = elementHash(expected.getValue(i), spec));
+        parallel(actual.size(), actual.size(), i -> actHashes[i] = elementHash(actual.getValue(i), spec));
 
+        Map<Long, Deque<Integer>> actualByHash = new HashMap<>(actual.size() * 4 / 3 + 1);
         for (int i = 0; i < actual.size(); i++) {
-            if (expected.isEmpty() || !matrix[0][i]) {
-                diffObj.put(i + MatchingStatus.NW.name(), new MatchingResult.Builder().setActualValue(actual.getValue(i)).setMatchingStatus(MatchingStatus.NW).setMatchingIndex(i).setElementIndex(-1).create());
-                finalStatus.set(false);
+            actualByHash.computeIfAbsent(actHashes[i], h -> new ArrayDeque<>(1)).add(i);
+        }
+
+        for (int i = 0; i < expected.size(); i++) {
+            Object exp = expected.getValue(i);
+            Deque<Integer> sameHash = actualByHash.get(expHashes[i]);
+            if (sameHash == null) {
+                continue;
+            }
+            for (Iterator<Integer> it = sameHash.iterator(); it.hasNext(); ) {
+                int matIndex = it.next();
+                //Equal hash is only a hint, a collision leaves both elements to best matching
+                if (status(scoreElement(exp, actual.getValue(matIndex), spec)) == MatchingStatus.P) {
+                    assigned[i] = matIndex;
+                    claimed.set(matIndex);
+                    it.remove();
+                    break;
+                }
             }
         }
+        return assigned;
+    }
+
+    /**
+     * @return hash of an array element, looked up in the hashes of the comparison when it already has them
+     */
+    private long elementHash(Object value, MatchSpec spec) {
+        return hashes != null && (value instanceof JsonObject || value instanceof JsonArray) ? StructuralHash.of(value, spec, hashes).low() : StructuralHash.hash(value, spec);
+    }
+
+    /**
+     * Runs independent rows on the configured pool once the work reaches the parallel threshold.
+     */
+    private void parallel(int rows, long work, IntConsumer body) {
+        ParallelRows.forEach(options.getParallelPool(), rows, work, options.getParallelThreshold(), body);
+    }
 
-        MatchingResult.Builder result = createStatus(finalStatus.get() ? MatchingStatus.P : MatchingStatus.F);
-        if (!finalStatus.get() || isIgnored(diffObj)) {
-            result.setActualValue(actual).setExpectedValue(expected).setDifference(diffObj);
+    /**
+     * @return actual elements an expected element competes for: with business keys the unclaimed elements carrying
+     * its key, otherwise all the unclaimed elements
+     */
+    private int[] candidates(KeyIndex keyIndex, Object exp, int[] unclaimed, BitSet claimed, int pairs) {
+        int[] candidates = keyIndex == null ? null : keyIndex.candidates(exp);
+        return candidates == null ? unclaimed : pairs == 0 ? candidates : Arrays.stream(candidates).filter(matIndex -> !claimed.get(matIndex)).toArray();
+    }
+
+    private int[] unclaimed(int size, BitSet claimed) {
+        int[] unclaimed = new int[size - claimed.cardinality()];
+        for (int i = claimed.nextClearBit(0), k = 0; i < size; i = claimed.nextClearBit(i + 1)) {
+            unclaimed[k++] = i;
         }
-        return result.create();
+        return unclaimed;
     }
 
-    private boolean isIgnored(Map<String, MatchingResult> diffObj) {
-        return diffObj != null && diffObj.values().stream().anyMatch(res -> res.getStatus() == MatchingStatus.IGN || isIgnored(res.getDiff()));
+    private static boolean isPassing(MatchingResult result) {
+        return result.getStatus() == MatchingStatus.P && result.getDiff() == null;
     }
 
-    private void blockActualColumn(boolean[][] matrix, MatchingResult result) {
-        for (int i = 0; i < matrix.length; i++) {
-            matrix[i][result.getMatIndex()] = true;
+    /**
+     * Listeners need every value reported and depth limits need every level walked, so neither uses the shared cache.
+     * Other budgets do: only passing results are shared, they count no diffs and are no slower to reuse than to compute.
+     *
+     * @return cache of passing comparisons shared across calls, null if there is none or it can not be used
+     */
+    private ComparisonCache sharedCache() {
+        return listener == null && (budget == null || !budget.limitsDepth()) ? options.getComparisonCache() : null;
+    }
+
+    /**
+     * Keeps passing results without ignored attributes only, the others hold values and indexes of this document.
+     *
+     * @return the result, read-only once it is shared
+     */
+    private MatchingResult share(ComparisonCache shared, StructuralHash expHash, StructuralHash actHash, MatchSpec spec, MatchingResult result) {
+        if (shared != null && result.getStatus() == MatchingStatus.P && !isIgnored(result.getDiff())) {
+            return shared.put(expHash, actHash, spec, options.isSparseResults(), result);
         }
+        return result;
     }
 
-    private MatchingResult findBestMatchedItemAndPopulateMatrix(List<MatchingResult> allMatches, boolean[][] matrix) {
-        //Sort to make sure that BusinessKey matches are prioritized over non business Keys matches
-        allMatches.sort(this::sort);
+    private boolean isIgnored(Map<String, MatchingResult> diffObj) {
+        return diffObj != null && diffObj.values().stream().anyMatch(res -> res.getStatus() == MatchingStatus.IGN || isIgnored(res.getDiff()));
+    }
 
-        MatchingResult matchedObj = allMatches.stream().filter(obj -> obj.getElemIndex() != null && obj.getMatIndex() != null && !matrix[obj.getElemIndex()][obj.getMatIndex()]).findFirst().orElse(null);
-        if (matchedObj != null && matchedObj.getStatus() != MatchingStatus.NE) {
-            blockActualColumn(matrix, matchedObj);
-        } else {
-            matchedObj = createStatus(MatchingStatus.NE).setExpectedValue(matchedObj == null ? null : matchedObj.getExp()).create();
-        }
-        return matchedObj;
-    }
-
-    private int sort(MatchingResult r1, MatchingResult r2) {
-        return r1.isOnlyKeyMatching() && !r2.isOnlyKeyMatching()
-                ? -1 : r1.isOnlyKeyMatching() && r2.isOnlyKeyMatching() && r1.getCount() > r2.getCount()
-                ? -1 : r1.isOnlyKeyMatching() && r2.isOnlyKeyMatching() && r1.getCount() != null && r1.getCount().equals(r2.getCount())
-                ? 0 : r2.isOnlyKeyMatching() && !r1.isOnlyKeyMatching()
-                ? 1 : r1.getCount() != null && r2.getCount() != null ? r1.getCount() - r2.getCount() : 0;
-    }
-
-    private List<MatchingResult> findBestMatchingAttrCount(Object exp, int elemIndex, JsonArray array, JsonObject ignored, JsonObject businessKey) {
-        if (exp == null || array == null) {
-            LOGGER.info("Either obj to match or array is null");
-            return new LinkedList<>();
-        } else if (array.isEmpty()) {
-            //If Actual array is blank, all elemnts from expected are not matching
-            return Collections.singletonList(createStatus(MatchingStatus.F)
-                    .setElementIndex(elemIndex)
-                    .setExpectedValue(exp)
-                    .create());
-        }
-
-        AtomicInteger bestMatchIndex = new AtomicInteger(-1);
-        return array.stream().map(act -> {
-            bestMatchIndex.set(bestMatchIndex.get() + 1);
-            MatchingResult.Builder result = createStatus(MatchingStatus.F)
-                    .setMatchingCount(0)
-                    .setMatchingIndex(bestMatchIndex.get())
-                    .setElementIndex(elemIndex);
-            if (isPrimitive(exp) && isPrimitive(act)) {
-                if (exp.equals(act)) {
-                    result.setMatchingStatus(MatchingStatus.P).setMatchingCount(NEG_INFINITY);
-                }
-            } else if (exp instanceof JsonObject && act instanceof JsonObject) {
-                result = compare((JsonObject) exp, (JsonObject) act, ignored, businessKey).newBuilder().setMatchingIndex(bestMatchIndex.get()).setElementIndex(elemIndex);
-            } else if (exp instanceof JsonArray && act instanceof JsonArray) {
-                result = compare((JsonArray) exp, (JsonArray) act, ignored, businessKey).newBuilder().setMatchingIndex(bestMatchIndex.get()).setElementIndex(elemIndex);
+    private MatchingResult compareElement(Object exp, int elemIndex, Object act, int matIndex, MatchSpec spec, ResultPath arrayPath) {
+        ResultPath path = arrayPath == null ? null : arrayPath.element(elemIndex, matIndex);
+        MatchingResult.Builder result = createStatus(MatchingStatus.F)
+                .setMatchingCount(0)
+                .setMatchingIndex(matIndex)
+                .setElementIndex(elemIndex);
+        if (exp == null && act == null) {
+            result.setMatchingStatus(MatchingStatus.P).setMatchingCount(NEG_INFINITY);
+        } else if (JsonValues.isPrimitive(exp) && JsonValues.isPrimitive(act)) {
+            countLeaf();
+            if (JsonValues.primitiveEquals(exp, act)) {
+                result.setMatchingStatus(MatchingStatus.P).setMatchingCount(NEG_INFINITY);
             }
+        } else if (exp instanceof JsonObject && act instanceof JsonObject) {
+            result = compare((JsonObject) exp, (JsonObject) act, spec, path).newBuilder().setMatchingIndex(matIndex).setElementIndex(elemIndex);
+        } else if (exp instanceof JsonArray && act instanceof JsonArray) {
+            result = compare((JsonArray) exp, (JsonArray) act, spec, path).newBuilder().setMatchingIndex(matIndex).setElementIndex(elemIndex);
+        }
 
-            if (result.getMatchingStatus() == MatchingStatus.F) {
-                failMatchingStatus(exp, act, result.setMatchingIndex(bestMatchIndex.get()), result.getDifference());
+        if (result.getMatchingStatus() == MatchingStatus.F) {
+            if (!(exp instanceof JsonObject && act instanceof JsonObject) && !(exp instanceof JsonArray && act instanceof JsonArray)) {
+                recordDiff();
             }
-            return result.create();
-        }).collect(Collectors.toList());
+            failMatchingStatus(exp, act, result.setMatchingIndex(matIndex), result.getDifference(), path);
+        }
+        return result.create();
     }
 
-    private MatchingResult compare(JsonObject exp, JsonObject act, JsonObject ignored, JsonObject businessKey) {
+    private MatchingResult compare(JsonObject exp, JsonObject act, MatchSpec spec, ResultPath path) {
         MatchingResult.Builder finalStatusObj = createStatus(MatchingStatus.P);
         if (exp == null && act == null) {
             return finalStatusObj.setMatchingCount(NEG_INFINITY).create();
         } else if (exp == null || act == null) {
-            LOGGER.info("Either obj to match or actual is null");
-            return finalStatusObj.setMatchingStatus(MatchingStatus.F).setActualValue(act).setExpectedValue(exp).create();
+            LOGGER.debug("Either obj to match or actual is null");
+            return values(finalStatusObj.setMatchingStatus(MatchingStatus.F), exp, act, path).create();
+        } else if (isTruncated(path)) {
+            return finalStatusObj.setMatchingStatus(MatchingStatus.TR).create();
+        }
+        if (stats != null) {
+            stats.visit(path);
+        }
+        MatchingResult cached = cache == null ? null : cache.get(path);
+        ComparisonCache shared = sharedCache();
+        StructuralHash expHash = shared == null ? null : StructuralHash.of(exp, spec, hashes);
+        StructuralHash actHash = shared == null ? null : StructuralHash.of(act, spec, hashes);
+        if (cached == null && shared != null) {
+            cached = shared.get(expHash, actHash, spec, options.isSparseResults());
+        }
+        if (cached != null) {
+            return cached;
+        } else if (listener != null) {
+            listener.enterObject(pointer(path));
         }
         AtomicInteger matchingCount = new AtomicInteger(0);
-        Map<String, MatchingResult> diffObj = new HashMap<>();
-        finalStatusObj.setMatchingCount(NEG_INFINITY).setDifference(diffObj);
+        int passCount = 0;
+        //Sparse results only need a diff once an attribute fails
+        Map<String, MatchingResult> diffObj = options.isSparseResults() ? null : new HashMap<>();
+        finalStatusObj.setMatchingCount(NEG_INFINITY);
 
         Set<String> expFields = exp.fieldNames();
         Set<String> actFields = act.fieldNames();
 
-        Set<String> newAttr = new HashSet<>(actFields);
-        Set<String> delAttr = new HashSet<>(expFields);
-        delAttr.removeAll(actFields);
-        newAttr.removeAll(expFields);
-
-        if (!newAttr.isEmpty()) {
+        //Missing and new attributes fail the object, whatever its other attributes give
+        boolean missingOrNew = expFields.size() != actFields.size() || !actFields.containsAll(expFields);
+        if (missingOrNew) {
             finalStatusObj.setMatchingStatus(MatchingStatus.F);
-            newAttr.forEach(attr -> {
-                diffObj.put(attr, new MatchingResult.Builder().setMatchingStatus(MatchingStatus.NW).setActualValue(act.getValue(attr)).create());
-            });
         }
 
-        if (!delAttr.isEmpty()) {
-            finalStatusObj.setMatchingStatus(MatchingStatus.F);
-            delAttr.forEach(attr -> {
-                diffObj.put(attr, new MatchingResult.Builder().setMatchingStatus(MatchingStatus.NE).setExpectedValue(exp.getValue(attr)).create());
-            });
+        //Expected field order, missing attributes in their place, the scoring pass walks the fields the same way
+        for (String attr : expFields) {
+            ResultPath attrPath = path == null ? null : path.attr(attr);
+            if (!actFields.contains(attr)) {
+                recordDiff();
+                diffObj = putResult(diffObj, attr, values(createStatus(MatchingStatus.NE), exp.getValue(attr), null, attrPath).create(), exp.getValue(attr), null, attrPath);
+                continue;
+            }
+            MatchingResult attrResult = compareAttribute(attr, exp.getValue(attr), act.getValue(attr), spec, finalStatusObj, matchingCount, path);
+            if (attrResult == null) {
+                passCount++;
+            } else {
+                diffObj = putResult(diffObj, attr, attrResult, exp.getValue(attr), act.getValue(attr), attrPath);
+            }
         }
 
-        Set<String> intersection = new HashSet<>(expFields);
-        intersection.retainAll(actFields);
+        //New attributes last, in actual field order
+        if (missingOrNew) {
+            for (String attr : actFields) {
+                if (!expFields.contains(attr)) {
+                    recordDiff();
+                    ResultPath attrPath = path == null ? null : path.attr(attr);
+                    diffObj = putResult(diffObj, attr, values(createStatus(MatchingStatus.NW), null, act.getValue(attr), attrPath).create(), null, act.getValue(attr), attrPath);
+                }
+            }
+        }
 
-        intersection.forEach(attr -> {
-            Object expVal = exp.getValue(attr);
-            Object actVal = act.getValue(attr);
-            MatchingResult.Builder internalDiff = createStatus(MatchingStatus.P);
+        finalStatusObj.setDifference(diffObj);
+        if (!finalStatusObj.isPassing()) {
+            applyKeyStatus(finalStatusObj, expFields, attr -> exp.getValue(attr) instanceof JsonArray, spec);
+            values(finalStatusObj, exp, act, path).setMatchingCount(matchingCount.get());
+        }
+        if (options.isSparseResults()) {
+            finalStatusObj.setPassCount(passCount);
+        }
+        if (listener != null) {
+            listener.exitObject(pointer(path), finalStatusObj.getMatchingStatus());
+            finalStatusObj.setDifference(null);
+        }
 
-            boolean keyComparison = businessKey.containsKey(attr);
-            boolean ignoreAttr = ignored.containsKey(attr);
+        MatchingResult created = share(shared, expHash, actHash, spec, finalStatusObj.create());
+        return cache == null ? created : cache.put(path, created);
+    }
 
-            internalDiff.setAlgo(keyComparison ? MatchingAlgo.K : MatchingAlgo.M);
+    /**
+     * Compares the values of an attribute present in both objects.
+     * A failing attribute fails the enclosing object through finalStatusObj, a passing one adds to matchingCount.
+     *
+     * @param objectPath path of the enclosing object for compact results, null otherwise
+     * @return result of the attribute, null if it passes and sparse results leave it out
+     */
+    MatchingResult compareAttribute(String attr, Object expVal, Object actVal, MatchSpec spec, MatchingResult.Builder finalStatusObj,
+                                    AtomicInteger matchingCount, ResultPath objectPath) {
+        ResultPath path = objectPath == null ? null : objectPath.attr(attr);
+        //Built once the attribute fails or is ignored, a passing attribute of sparse results needs none
+        MatchingResult.Builder internalDiff = null;
 
-            if (expVal == null && actVal == null) {
-                matchingCount.set(matchingCount.get() + 1);
-            } else if (expVal == null || actVal == null) {
-                assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.F);
-                if (ignoreAttr) {
-                    internalDiff.setMatchingStatus(MatchingStatus.IGN);
-                } else {
-                    internalDiff.setMatchingStatus(MatchingStatus.F);
+        boolean keyComparison = spec.isKey(attr);
+        boolean ignoreAttr = spec.isIgnored(attr);
+
+        if (expVal == null && actVal == null) {
+            matchingCount.set(matchingCount.get() + 1);
+        } else if (expVal == null || actVal == null) {
+            internalDiff = attrStatus(keyComparison);
+            assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.F, path);
+            if (ignoreAttr) {
+                internalDiff.setMatchingStatus(MatchingStatus.IGN);
+            } else {
+                internalDiff.setMatchingStatus(MatchingStatus.F);
+                finalStatusObj.setMatchingStatus(MatchingStatus.F);
+            }
+
+        } else if (JsonValues.isPrimitive(expVal) && JsonValues.isPrimitive(actVal)) {
+            if (ignoreAttr) {
+                internalDiff = attrStatus(keyComparison);
+                assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.IGN, path);
+            } else {
+                countLeaf();
+                boolean isMatching = JsonValues.primitiveEquals(expVal, actVal);
+                matchingCount.set(matchingCount.get() + (isMatching ? 1 : 0));
+                if (!isMatching) {
+                    internalDiff = attrStatus(keyComparison);
+                    assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.F, path);
                     finalStatusObj.setMatchingStatus(MatchingStatus.F);
                 }
+            }
+        } else if (JsonValues.isComparable(expVal) && JsonValues.isComparable(actVal)) {
+            if (ignoreAttr) {
+                internalDiff = attrStatus(keyComparison);
+                assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.IGN, path);
+            } else {
+                countLeaf();
+                boolean isMatching = JsonValues.comparableEquals(expVal, actVal);
+                matchingCount.set(matchingCount.get() + (isMatching ? 1 : 0));
+                if (!isMatching) {
+                    internalDiff = attrStatus(keyComparison);
+                    assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.F, path);
+                    finalStatusObj.setMatchingStatus(MatchingStatus.F);
+                }
+            }
+        } else if (expVal instanceof JsonObject && actVal instanceof JsonObject) {
+            if (spec.isIgnoredEntirely(attr)) {
+                internalDiff = attrStatus(keyComparison);
+                assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.IGN, path);
+            } else {
+                MatchingResult result = compare((JsonObject) expVal, (JsonObject) actVal, spec.getChild(attr), path);
+                if (result.isAllMatching() || result.isOnlyKeyMatching()) {
+                    matchingCount.set(matchingCount.get() + 1);
+                } else {
+                    internalDiff = attrStatus(keyComparison);
+                    failMatchingStatus(expVal, actVal, internalDiff.setMatchingStatus(result.getStatus()).setPassCount(result.getPassCount()), result.getDiff(), path);
+                    finalStatusObj.setMatchingStatus(result.getStatus());
+                }
+            }
+        } else if (expVal instanceof JsonArray && actVal instanceof JsonArray) {
 
-            } else if (isPrimitive(expVal) && isPrimitive(actVal)) {
-                if (ignoreAttr) {
-                    assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.IGN);
+            if (spec.isIgnoredEntirely(attr)) {
+                internalDiff = attrStatus(keyComparison);
+                assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.IGN, path);
+            } else {
+                MatchingResult result = compare((JsonArray) expVal, (JsonArray) actVal, spec.getChild(attr), path);
+                if (isIgnored(result.getDiff())) {
+                    internalDiff = attrStatus(keyComparison);
+                    internalDiff.setDifference(result.getDiff());
+                }
+                if (result.getStatus() == MatchingStatus.P) {
+                    matchingCount.set(matchingCount.get() + 1);
                 } else {
-                    boolean isMatching = expVal.equals(actVal);
-                    matchingCount.set(matchingCount.get() + (isMatching ? 1 : 0));
-                    if (!isMatching) {
-                        assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.F);
-                        finalStatusObj.setMatchingStatus(MatchingStatus.F);
+                    internalDiff = internalDiff == null ? attrStatus(keyComparison) : internalDiff;
+                    failMatchingStatus(expVal, actVal, internalDiff.setMatchingStatus(result.getStatus()).setPassCount(result.getPassCount()), result.getDiff(), path);
+                    finalStatusObj.setMatchingStatus(result.getStatus());
+                }
+            }
+        }
+
+        if (internalDiff == null) {
+            return options.isSparseResults() ? null : attrStatus(keyComparison).create();
+        } else if (options.isSparseResults() && internalDiff.isPassing() && internalDiff.getDifference() == null) {
+            return null;
+        }
+        return internalDiff.create();
+    }
+
+    private MatchingResult.Builder attrStatus(boolean keyComparison) {
+        MatchingResult.Builder status = createStatus(MatchingStatus.P);
+        status.setAlgo(keyComparison ? MatchingAlgo.K : MatchingAlgo.M);
+        return status;
+    }
+
+    /**
+     * Once an object fails, the business key attributes decide between {@link MatchingStatus#PK} and {@link MatchingStatus#NE}.
+     *
+     * @param isExpArray tells if the expected value of an attribute is an array, array keys do not decide
+     */
+    void applyKeyStatus(MatchingResult.Builder finalStatusObj, Set<String> expFields, Predicate<String> isExpArray, MatchSpec spec) {
+        if (spec.hasKeys() && expFields.containsAll(spec.getKeys())) {
+            for (String fieldName : spec.getKeys()) {
+                //Sparse results leave passing key attributes out of the diff
+                MatchingResult keyDiff = finalStatusObj.getDifference() == null ? null : finalStatusObj.getDifference().get(fieldName);
+                if ((keyDiff == null || keyDiff.getAlgo() == MatchingAlgo.K) && !isExpArray.test(fieldName)) {
+                    if (keyDiff == null || keyDiff.getStatus() == MatchingStatus.P) {
+                        finalStatusObj.setMatchingStatus(MatchingStatus.PK);
+                    } else {
+                        finalStatusObj.setMatchingStatus(MatchingStatus.NE);
                     }
                 }
-            } else if (isComparable(expVal) && isComparable(actVal)) {
+            }
+        }
+    }
+
+    /**
+     * Status and matching count the comparison of two array elements ends up with, without building its result.
+     * Mirrors {@link #compareElement}, packed as status ordinal in the high and count in the low 32 bits.
+     */
+    private long scoreElement(Object exp, Object act, MatchSpec spec) {
+        if (exp == null && act == null) {
+            return pack(MatchingStatus.P, NEG_INFINITY);
+        } else if (JsonValues.isPrimitive(exp) && JsonValues.isPrimitive(act)) {
+            countLeaf();
+            return JsonValues.primitiveEquals(exp, act) ? pack(MatchingStatus.P, NEG_INFINITY) : pack(MatchingStatus.F, 0);
+        } else if (exp instanceof JsonObject && act instanceof JsonObject) {
+            return scoreObject((JsonObject) exp, (JsonObject) act, spec);
+        } else if (exp instanceof JsonArray && act instanceof JsonArray) {
+            return pack(arrayMatches((JsonArray) exp, (JsonArray) act, spec) ? MatchingStatus.P : MatchingStatus.F, 0);
+        }
+        return pack(MatchingStatus.F, 0);
+    }
+
+    /**
+     * Mirrors {@link #compare(JsonObject, JsonObject, MatchSpec, ResultPath)}: counts matching attributes and works out the
+     * key status, allocating nothing.
+     */
+    private long scoreObject(JsonObject exp, JsonObject act, MatchSpec spec) {
+        //Missing and new attributes fail first, nested statuses of the common attributes may override it
+        int common = 0;
+        for (String attr : exp.fieldNames()) {
+            if (act.containsKey(attr)) {
+                common++;
+            }
+        }
+        MatchingStatus status = common < exp.size() || common < act.size() ? MatchingStatus.F : MatchingStatus.P;
+        int matchingCount = 0;
+
+        //The last key attribute present on both sides decides between PK and NE
+        String decidingKey = null;
+        if (spec.hasKeys() && exp.fieldNames().containsAll(spec.getKeys())) {
+            for (String key : spec.getKeys()) {
+                if (act.containsKey(key) && !(exp.getValue(key) instanceof JsonArray)) {
+                    decidingKey = key;
+                }
+            }
+        }
+        boolean decidingKeyPassing = false;
+
+        for (String attr : exp.fieldNames()) {
+            if (!act.containsKey(attr)) {
+                continue;
+            }
+
+            Object expVal = exp.getValue(attr);
+            Object actVal = act.getValue(attr);
+            boolean ignoreAttr = spec.isIgnored(attr);
+            boolean attrPassing = true;
+
+            if (expVal == null && actVal == null) {
+                matchingCount++;
+            } else if (expVal == null || actVal == null) {
+                attrPassing = false;
+                if (!ignoreAttr) {
+                    status = MatchingStatus.F;
+                }
+            } else if (JsonValues.isPrimitive(expVal) && JsonValues.isPrimitive(actVal)
+                    || JsonValues.isComparable(expVal) && JsonValues.isComparable(actVal)) {
                 if (ignoreAttr) {
-                    assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.IGN);
+                    attrPassing = false;
+                } else if (leafEquals(expVal, actVal)) {
+                    matchingCount++;
                 } else {
-                    boolean isMatching = ((Comparable) expVal).compareTo(actVal) == 0;
-                    matchingCount.set(matchingCount.get() + (isMatching ? 1 : 0));
-                    if (!isMatching) {
-                        assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.F);
-                        finalStatusObj.setMatchingStatus(MatchingStatus.F);
-                    }
+                    attrPassing = false;
+                    status = MatchingStatus.F;
                 }
             } else if (expVal instanceof JsonObject && actVal instanceof JsonObject) {
-                if (ignoreAttr && (ignored.getValue(attr) instanceof Boolean) && ignored.getBoolean(attr)) {
-                    assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.IGN);
+                if (spec.isIgnoredEntirely(attr)) {
+                    attrPassing = false;
                 } else {
-                    MatchingResult result = compare((JsonObject) expVal, (JsonObject) actVal,
-                            ignoreAttr && ignored.getValue(attr) instanceof JsonObject ? ignored.getJsonObject(attr) : new JsonObject(),
-                            keyComparison ? businessKey.getJsonObject(attr) : new JsonObject());
-                    if (result.isAllMatching() || result.isOnlyKeyMatching()) {
-                        matchingCount.set(matchingCount.get() + 1);
+                    MatchingStatus nested = status(scoreObject((JsonObject) expVal, (JsonObject) actVal, spec.getChild(attr)));
+                    if (nested == MatchingStatus.P || nested == MatchingStatus.PK) {
+                        matchingCount++;
                     } else {
-                        failMatchingStatus(expVal, actVal, internalDiff.setMatchingStatus(result.getStatus()), result.getDiff());
-                        finalStatusObj.setMatchingStatus(result.getStatus());
+                        attrPassing = false;
+                        status = nested;
                     }
                 }
             } else if (expVal instanceof JsonArray && actVal instanceof JsonArray) {
-
-                if (ignoreAttr && (ignored.getValue(attr) instanceof Boolean) && ignored.getBoolean(attr)) {
-                    assignStatusAndExpAct(expVal, actVal, internalDiff, MatchingStatus.IGN);
+                if (spec.isIgnoredEntirely(attr)) {
+                    attrPassing = false;
+                } else if (arrayMatches((JsonArray) expVal, (JsonArray) actVal, spec.getChild(attr))) {
+                    matchingCount++;
                 } else {
-                    JsonArray expValArray = (JsonArray) expVal;
-                    JsonArray actValArray = (JsonArray) actVal;
-                    MatchingResult result = compare(expValArray, actValArray,
-                            ignoreAttr && ignored.getValue(attr) instanceof JsonObject ? ignored.getJsonObject(attr) : new JsonObject(),
-                            keyComparison ? businessKey.getJsonObject(attr) : new JsonObject());
-                    if (isIgnored(result.getDiff())) {
-                        internalDiff.setDifference(result.getDiff());
-                    }
-                    if (result.getStatus() == MatchingStatus.P) {
-                        matchingCount.set(matchingCount.get() + 1);
-                    } else {
-                        failMatchingStatus(expVal, actVal, internalDiff.setMatchingStatus(result.getStatus()), result.getDiff());
-                        finalStatusObj.setMatchingStatus(result.getStatus());
-                    }
+                    attrPassing = false;
+                    status = MatchingStatus.F;
                 }
             }
 
-            diffObj.put(attr, internalDiff.create());
-        });
+            if (attr.equals(decidingKey)) {
+                decidingKeyPassing = attrPassing;
+            }
+        }
 
-        if (!finalStatusObj.isPassing()) {
-            if (!businessKey.fieldNames().isEmpty()
-                    && exp.fieldNames().containsAll(businessKey.fieldNames())) {
-                for (String fieldName : businessKey.fieldNames()) {
-                    if (finalStatusObj.getDifference().get(fieldName).getAlgo() == MatchingAlgo.K && !(exp.getValue(fieldName) instanceof JsonArray)) {
-                        if (finalStatusObj.getDifference().get(fieldName).getStatus() == MatchingStatus.P) {
-                            finalStatusObj.setMatchingStatus(MatchingStatus.PK);
-                        } else {
-                            finalStatusObj.setMatchingStatus(MatchingStatus.NE);
+        if (status == MatchingStatus.P) {
+            return pack(status, NEG_INFINITY);
+        } else if (decidingKey != null) {
+            status = decidingKeyPassing ? MatchingStatus.PK : MatchingStatus.NE;
+        }
+        return pack(status, matchingCount);
+    }
+
+    /**
+     * @return true if comparing the arrays gives {@link MatchingStatus#P}
+     */
+    private boolean arrayMatches(JsonArray expected, JsonArray actual, MatchSpec spec) {
+        if (expected.size() != actual.size()) {
+            //Either an expected element is left without a pair or an actual element is new
+            return false;
+        }
+        BitSet passing = new BitSet(expected.size());
+        assignArray(expected, actual, spec, passing, null);
+        return passing.cardinality() == expected.size();
+    }
+
+    /**
+     * Short-circuit version of {@link #compareElement}: true if the pair passes.
+     */
+    private boolean elementsMatch(Object exp, Object act, MatchSpec spec) {
+        if (exp == null && act == null) {
+            return true;
+        } else if (JsonValues.isPrimitive(exp) && JsonValues.isPrimitive(act)) {
+            return JsonValues.primitiveEquals(exp, act);
+        } else if (exp instanceof JsonObject && act instanceof JsonObject) {
+            return objectsMatch((JsonObject) exp, (JsonObject) act, spec);
+        } else if (exp instanceof JsonArray && act instanceof JsonArray) {
+            return arraysMatch((JsonArray) exp, (JsonArray) act, spec);
+        }
+        return false;
+    }
+
+    /**
+     * Short-circuit version of {@link #compare(JsonObject, JsonObject, MatchSpec, ResultPath)}: true if it gives
+     * {@link MatchingStatus#P}.
+     */
+    private boolean objectsMatch(JsonObject exp, JsonObject act, MatchSpec spec) {
+        //A missing or new attribute fails the object whatever the values
+        if (exp.size() != act.size()) {
+            return false;
+        }
+        for (String attr : exp.fieldNames()) {
+            if (!act.containsKey(attr)) {
+                return false;
+            }
+        }
+
+        for (String attr : exp.fieldNames()) {
+            Object expVal = exp.getValue(attr);
+            Object actVal = act.getValue(attr);
+            boolean ignoreAttr = spec.isIgnored(attr);
+
+            if (expVal == null && actVal == null) {
+                continue;
+            } else if (expVal == null || actVal == null) {
+                if (!ignoreAttr) {
+                    return false;
+                }
+            } else if (JsonValues.isPrimitive(expVal) && JsonValues.isPrimitive(actVal)) {
+                if (!ignoreAttr && !JsonValues.primitiveEquals(expVal, actVal)) {
+                    return false;
+                }
+            } else if (JsonValues.isComparable(expVal) && JsonValues.isComparable(actVal)) {
+                if (!ignoreAttr && !JsonValues.comparableEquals(expVal, actVal)) {
+                    return false;
+                }
+            } else if (expVal instanceof JsonObject && actVal instanceof JsonObject) {
+                if (!spec.isIgnoredEntirely(attr)) {
+                    //A nested object matching on its business key only does not fail its parent, it needs the full status
+                    MatchSpec child = spec.getChild(attr);
+                    if (child.hasKeys()) {
+                        MatchingStatus nested = status(scoreObject((JsonObject) expVal, (JsonObject) actVal, child));
+                        if (nested != MatchingStatus.P && nested != MatchingStatus.PK) {
+                            return false;
                         }
+                    } else if (!objectsMatch((JsonObject) expVal, (JsonObject) actVal, child)) {
+                        return false;
                     }
                 }
+            } else if (expVal instanceof JsonArray && actVal instanceof JsonArray) {
+                if (!spec.isIgnoredEntirely(attr) && !arraysMatch((JsonArray) expVal, (JsonArray) actVal, spec.getChild(attr))) {
+                    return false;
+                }
             }
-            finalStatusObj.setActualValue(act).setExpectedValue(exp).setMatchingCount(matchingCount.get());
         }
+        return true;
+    }
+
+    /**
+     * Short-circuit version of {@link #arrayMatches}: every expected element has to pass against its own actual element.
+     */
+    private boolean arraysMatch(JsonArray expected, JsonArray actual, MatchSpec spec) {
+        if (expected.size() != actual.size()) {
+            return false;
+        } else if (expected.isEmpty()) {
+            return true;
+        }
+
+        int[] merged = spec.isSortedByKey() ? SortedMerge.assign(expected, actual, spec.getKeys()) : null;
+        if (merged != null) {
+            for (int i = 0; i < merged.length; i++) {
+                if (merged[i] < 0 || !elementsMatch(expected.getValue(i), actual.getValue(merged[i]), spec)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        BitSet claimed = new BitSet(actual.size());
+        int[] assigned = pairIdentical(expected, actual, spec, claimed);
+        int pairs = claimed.cardinality();
+        if (pairs == expected.size()) {
+            return true;
+        }
+        int[] unclaimed = unclaimed(actual.size(), claimed);
+        KeyIndex keyIndex = spec.hasKeys() ? KeyIndex.build(actual, spec.getKeys()) : null;
+
+        //Only passing candidates count, an element without any fails the array right away
+        int[][] columns = new int[expected.size() - pairs][];
+        int[][] scores = new int[columns.length][];
+        for (int i = 0, r = 0; i < expected.size(); i++) {
+            if (assigned[i] >= 0) {
+                continue;
+            }
+            Object exp = expected.getValue(i);
+            int[] passing = Arrays.stream(candidates(keyIndex, exp, unclaimed, claimed, pairs))
+                    .filter(matIndex -> elementsMatch(exp, actual.getValue(matIndex), spec))
+                    .toArray();
+            if (passing.length == 0) {
+                return false;
+            }
+            columns[r] = passing;
+            scores[r] = new int[passing.length];
+            Arrays.fill(scores[r], AssignmentEngine.score(MatchingStatus.P, null));
+            r++;
+        }
+
+        for (int chosen : AssignmentEngine.assign(columns, scores, actual.size(), options.getAssignmentMode(), options.getOptimalAssignmentLimit(), null)) {
+            if (chosen < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long pack(MatchingStatus status, int count) {
+        return (long) status.ordinal() << 32 | count & 0xFFFFFFFFL;
+    }
+
+    private static MatchingStatus status(long score) {
+        return STATUSES[(int) (score >>> 32)];
+    }
+
+    private static int count(long score) {
+        return (int) score;
+    }
+
+    private void assignStatusAndExpAct(Object expVal, Object actVal, MatchingResult.Builder diff, MatchingStatus status, ResultPath path) {
+        if (status == MatchingStatus.F) {
+            recordDiff();
+        }
+        values(diff.setMatchingStatus(status), expVal, actVal, path);
+    }
+
+    private void failMatchingStatus(Object expVal, Object actVal, MatchingResult.Builder builder, Map<String, MatchingResult> diff, ResultPath path) {
+        values(builder, expVal, actVal, path).setDifference(diff);
+    }
+
+    /**
+     * @return true if the budget stops the comparison before the object or array at this path
+     */
+    private boolean isTruncated(ResultPath path) {
+        return budget != null && (budget.isStopped() || path != null && budget.isTooDeep(path.getDepth()));
+    }
+
+    /**
+     * Adds the result of an attribute or element to the diff. With a listener its difference is reported instead and
+     * only the status of a failing entry is kept, for the key status of the enclosing object.
+     *
+     * @param diffObj diff to add to, null if nothing was added yet
+     * @param path    path of the attribute or element
+     * @return the diff, created on the first entry it holds
+     */
+    private Map<String, MatchingResult> putResult(Map<String, MatchingResult> diffObj, String key, MatchingResult result, Object expVal, Object actVal, ResultPath path) {
+        if (listener == null) {
+            diffObj = diffObj == null ? new HashMap<>() : diffObj;
+            diffObj.put(key, result);
+            return diffObj;
+        }
+
+        //Compared objects and arrays have reported their own differences
+        boolean compared = result.getStatus() != MatchingStatus.TR && result.getStatus() != MatchingStatus.IGN
+                && (expVal instanceof JsonObject && actVal instanceof JsonObject || expVal instanceof JsonArray && actVal instanceof JsonArray);
+        if (!compared) {
+            report(result, expVal, actVal, path);
+        }
+        if (result.getStatus() != MatchingStatus.P) {
+            MatchingResult.Builder status = createStatus(result.getStatus());
+            status.setAlgo(result.getAlgo());
+            diffObj = diffObj == null ? new HashMap<>() : diffObj;
+            diffObj.put(key, status.create());
+        }
+        return diffObj;
+    }
+
+    /**
+     * Hands a difference that is final to the listener, if any.
+     */
+    private MatchingResult report(MatchingResult result, Object expVal, Object actVal, ResultPath path) {
+        if (listener != null && result.getStatus() != MatchingStatus.P) {
+            listener.onDiff(pointer(path), result.getStatus(), expVal, actVal);
+        }
+        return result;
+    }
+
+    /**
+     * @return JSON Pointer of the value in the expected document, in the actual document if it is new
+     */
+    private static String pointer(ResultPath path) {
+        return path == null ? null : path.getExp() != null ? path.getExp() : path.getAct();
+    }
+
+    private static MatchingResult commit(ArrayMatchEvent event, ResultPath path, JsonArray expected, JsonArray actual, MatchSpec spec, MatchingResult result) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = pointer(path);
+            event.expectedSize = expected.size();
+            event.actualSize = actual.size();
+            event.algo = (spec.hasKeys() ? MatchingAlgo.K : MatchingAlgo.M).name();
+            event.status = result.getStatus().name();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * @return number of fields or elements of an object or array, 0 for any other value
+     */
+    private static int rootSize(Object value) {
+        if (value instanceof JsonObject) {
+            return ((JsonObject) value).size();
+        } else if (value instanceof JsonArray) {
+            return ((JsonArray) value).size();
+        } else if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        } else if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        } else if (value != null && value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return 0;
+    }
 
-        return finalStatusObj.create();
+    private boolean leafEquals(Object expVal, Object actVal) {
+        countLeaf();
+        return JsonValues.isPrimitive(expVal) && JsonValues.isPrimitive(actVal)
+                ? JsonValues.primitiveEquals(expVal, actVal) : JsonValues.comparableEquals(expVal, actVal);
     }
 
-    private void assignStatusAndExpAct(Object expVal, Object actVal, MatchingResult.Builder diff, MatchingStatus status) {
-        diff.setMatchingStatus(status).setExpectedValue(expVal).setActualValue(actVal);
+    private void countLeaf() {
+        if (stats != null) {
+            stats.leaf();
+        }
     }
 
-    private void failMatchingStatus(Object expVal, Object actVal, MatchingResult.Builder builder, Map<String, MatchingResult> diff) {
-        builder.setExpectedValue(expVal).setActualValue(actVal).setDifference(diff);
+    private void recordDiff() {
+        if (budget != null) {
+            budget.recordDiff();
+        }
     }
 
-    private boolean isPrimitive(Object o) {
-        return o instanceof String || o instanceof Double || o instanceof Float || o instanceof Integer || o instanceof Boolean || o instanceof Long;
+    /**
+     * Sets the expected and actual values of a result. With compact results objects and arrays are recorded as their
+     * JSON Pointer instead, only leaf values are retained. Values read from POJOs are recorded as copies of their views.
+     */
+    private MatchingResult.Builder values(MatchingResult.Builder builder, Object expVal, Object actVal, ResultPath path) {
+        if (path == null || !options.isCompactResults()) {
+            return builder.setExpectedValue(JsonValues.detach(expVal)).setActualValue(JsonValues.detach(actVal));
+        }
+        if (isLeaf(expVal)) {
+            builder.setExpectedValue(expVal);
+        } else {
+            builder.setExpectedPath(path.getExp());
+        }
+        if (isLeaf(actVal)) {
+            builder.setActualValue(actVal);
+        } else {
+            builder.setActualPath(path.getAct());
+        }
+        return builder;
     }
 
-    private boolean isComparable(Object expVal) {
-        return expVal instanceof Comparable;
+    private static boolean isLeaf(Object value) {
+        return value == null || JsonValues.isComparable(value);
     }
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the inputs of the matcher as JSON values.
+ * Inputs that already are JSON trees (JsonObject, JsonArray, Map and List of JSON values) are walked in place
+ * through a read-only view. POJOs, and Maps and collections holding them, are read through the lazy views of
+ * {@link PojoValues}, only what those can not read goes through the Jackson encode/parse round trip.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class JsonValues {
+
+    private JsonValues() {
+    }
+
+    /**
+     * @param value JsonObject, Map or POJO
+     * @return JsonObject view over the value, never a copy when the value is already a JSON tree or a POJO Jackson
+     * writes as a plain bean
+     */
+    @SuppressWarnings("unchecked")
+    static JsonObject toJsonObject(Object value) {
+        if (value instanceof JsonObject && isJsonTree(value)) {
+            return (JsonObject) value;
+        } else if (value instanceof Map && isJsonTree(value)) {
+            return new JsonObject((Map<String, Object>) value);
+        }
+        Object view = PojoValues.read(value);
+        return view instanceof Map ? new JsonObject((Map<String, Object>) view) : Json.encodeToBuffer(value).toJsonObject();
+    }
+
+    /**
+     * @param value JsonArray, List or an array POJO
+     * @return JsonArray view over the value, never a copy when the value is already a JSON tree
+     */
+    @SuppressWarnings("unchecked")
+    static JsonArray toJsonArray(Object value) {
+        if (value instanceof JsonArray && isJsonTree(value)) {
+            return (JsonArray) value;
+        } else if (value instanceof List && isJsonTree(value)) {
+            return new JsonArray((List<Object>) value);
+        }
+        Object view = PojoValues.read(value);
+        return view instanceof List ? new JsonArray((List<Object>) view) : Json.encodeToBuffer(value).toJsonArray();
+    }
+
+    /**
+     * A JSON tree only holds values the matcher can read without serialization: null, String, JSON numbers, Boolean,
+     * String keyed Maps / JsonObjects and Lists / JsonArrays of the same.
+     */
+    static boolean isJsonTree(Object value) {
+        if (value == null || value instanceof String || isJsonNumber(value) || value instanceof Boolean) {
+            return true;
+        } else if (value instanceof JsonObject) {
+            return isJsonTree(((JsonObject) value).getMap());
+        } else if (value instanceof JsonArray) {
+            return isJsonTree(((JsonArray) value).getList());
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!(entry.getKey() instanceof String) || !isJsonTree(entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (value instanceof List) {
+            for (Object elem : (List<?>) value) {
+                if (!isJsonTree(elem)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the value as read by Jackson, with a Map wrapped in a JsonObject and a List in a JsonArray
+     */
+    @SuppressWarnings("unchecked")
+    static Object wrap(Object value) {
+        if (value instanceof Map) {
+            return new JsonObject((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            return new JsonArray((List<Object>) value);
+        }
+        return value;
+    }
+
+    /**
+     * Vert.x copy() keeps the order of the properties only for objects backed by a LinkedHashMap, the copy of a view
+     * would lose it.
+     *
+     * @return mutable copy of a JSON value with its objects backed by LinkedHashMaps, leaves are kept as they are
+     */
+    static Object copyTree(Object value) {
+        if (value instanceof JsonObject) {
+            value = ((JsonObject) value).getMap();
+        } else if (value instanceof JsonArray) {
+            value = ((JsonArray) value).getList();
+        }
+        if (value instanceof Map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, elem) -> copy.put((String) key, copyTree(elem)));
+            return new JsonObject(copy);
+        } else if (value instanceof List) {
+            List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            for (Object elem : (List<?>) value) {
+                copy.add(copyTree(elem));
+            }
+            return new JsonArray(copy);
+        }
+        return value;
+    }
+
+    /**
+     * @return the value, or a copy of it when it is read through the views of {@link PojoValues}, so that results do
+     * not keep the compared POJOs alive nor change with them
+     */
+    static Object detach(Object value) {
+        if (value instanceof JsonObject && PojoValues.isView(((JsonObject) value).getMap())
+                || value instanceof JsonArray && PojoValues.isView(((JsonArray) value).getList())) {
+            return copyTree(value);
+        }
+        return value;
+    }
+
+    /**
+     * Other Numbers, e.g. AtomicLong, are neither Comparable nor compared by value, they go through Jackson which
+     * writes them as the number they hold.
+     *
+     * @return true for the boxed primitive numbers, BigDecimal and BigInteger
+     */
+    static boolean isJsonNumber(Object o) {
+        return o instanceof Integer || o instanceof Long || o instanceof Double || o instanceof Float || o instanceof Short
+                || o instanceof Byte || o instanceof BigDecimal || o instanceof BigInteger;
+    }
+
+    static boolean isPrimitive(Object o) {
+        return o instanceof String || o instanceof Double || o instanceof Float || o instanceof Integer || o instanceof Boolean || o instanceof Long;
+    }
+
+    static boolean isComparable(Object o) {
+        return o instanceof Comparable;
+    }
+
+    /**
+     * Equality of two primitives.
+     * Numbers are compared the way they would compare after a JSON round trip, so 5 (Integer) equals 5L (Long)
+     * and 1.5f equals 1.5d, but an integral number never equals a floating point one.
+     */
+    static boolean primitiveEquals(Object exp, Object act) {
+        if (exp.equals(act)) {
+            return true;
+        }
+        return isJsonNumber(exp) && isJsonNumber(act) && numberEquals((Number) exp, (Number) act);
+    }
+
+    /**
+     * Equality of two Comparables, numbers of different types are compared by value instead of failing in compareTo.
+     */
+    @SuppressWarnings("unchecked")
+    static boolean comparableEquals(Object exp, Object act) {
+        if (isJsonNumber(exp) && isJsonNumber(act)) {
+            return numberEquals((Number) exp, (Number) act);
+        } else if (!exp.getClass().isInstance(act) && !act.getClass().isInstance(exp)) {
+            return false;
+        }
+        return ((Comparable<Object>) exp).compareTo(act) == 0;
+    }
+
+    /**
+     * @return value usable as a hash key, values equal under {@link #primitiveEquals} have equal normalized values
+     */
+    static Object normalize(Object value) {
+        if (!isJsonNumber(value)) {
+            return value;
+        }
+        Number n = (Number) value;
+        if (!isIntegral(n)) {
+            return toDouble(n);
+        } else if (n instanceof BigInteger && ((BigInteger) n).bitLength() >= Long.SIZE) {
+            return n;
+        }
+        return n.longValue();
+    }
+
+    private static boolean numberEquals(Number exp, Number act) {
+        boolean expIntegral = isIntegral(exp);
+        if (expIntegral != isIntegral(act)) {
+            return false;
+        } else if (expIntegral) {
+            return exp instanceof BigInteger || act instanceof BigInteger
+                    ? toBigInteger(exp).equals(toBigInteger(act))
+                    : exp.longValue() == act.longValue();
+        }
+        return exp instanceof BigDecimal && act instanceof BigDecimal
+                ? ((BigDecimal) exp).compareTo((BigDecimal) act) == 0
+                : Double.compare(toDouble(exp), toDouble(act)) == 0;
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte || n instanceof BigInteger;
+    }
+
+    private static BigInteger toBigInteger(Number n) {
+        return n instanceof BigInteger ? (BigInteger) n : BigInteger.valueOf(n.longValue());
+    }
+
+    /**
+     * Float goes through its decimal form so 1.1f reads as 1.1, the same as it would after serialization.
+     */
+    private static double toDouble(Number n) {
+        return n instanceof Float || n instanceof BigDecimal ? Double.parseDouble(n.toString()) : n.doubleValue();
+    }
+}
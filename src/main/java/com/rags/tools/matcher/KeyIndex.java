@@ -0,0 +1,111 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash index of the actual array on the business key values of its elements, composite keys included.
+ * An expected element is then only compared with the actual elements carrying the same key instead of the whole array.
+ * <p>
+ * Elements that can not be keyed (not an object, a key attribute missing or holding an object/array) are kept aside
+ * and stay candidates of every expected element, the same way they compete with every element without the index.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class KeyIndex {
+
+    private final String[] keys;
+    private final Map<List<Object>, int[]> index;
+    private final int[] unkeyed;
+
+    private KeyIndex(String[] keys, Map<List<Object>, int[]> index, int[] unkeyed) {
+        this.keys = keys;
+        this.index = index;
+        this.unkeyed = unkeyed;
+    }
+
+    static KeyIndex build(JsonArray actual, Set<String> keyAttributes) {
+        String[] keys = keyAttributes.toArray(new String[0]);
+        Map<List<Object>, List<Integer>> buckets = new HashMap<>();
+        List<Integer> unkeyed = new ArrayList<>();
+        for (int i = 0; i < actual.size(); i++) {
+            List<Object> key = keyOf(actual.getValue(i), keys);
+            if (key == null) {
+                unkeyed.add(i);
+            } else {
+                buckets.computeIfAbsent(key, k -> new ArrayList<>(1)).add(i);
+            }
+        }
+
+        Map<List<Object>, int[]> index = new HashMap<>(buckets.size() * 4 / 3 + 1);
+        buckets.forEach((key, bucket) -> index.put(key, toArray(bucket)));
+        return new KeyIndex(keys, index, toArray(unkeyed));
+    }
+
+    /**
+     * @param exp expected element
+     * @return indexes of the actual elements the expected element has to be compared with, in array order.
+     * null if the expected element is not keyed and has to be compared with all of them.
+     */
+    int[] candidates(Object exp) {
+        List<Object> key = keyOf(exp, keys);
+        if (key == null) {
+            return null;
+        }
+        int[] keyed = index.get(key);
+        if (keyed == null) {
+            return unkeyed;
+        } else if (unkeyed.length == 0) {
+            return keyed;
+        }
+        return merge(keyed, unkeyed);
+    }
+
+    /**
+     * @return normalized key values of the element in key order, null if the element can not be keyed
+     */
+    static List<Object> keyOf(Object elem, String[] keys) {
+        if (!(elem instanceof JsonObject)) {
+            return null;
+        }
+        JsonObject obj = (JsonObject) elem;
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (!obj.containsKey(keys[i])) {
+                return null;
+            }
+            Object value = obj.getValue(keys[i]);
+            if (value instanceof JsonObject || value instanceof JsonArray) {
+                return null;
+            }
+            values[i] = JsonValues.normalize(value);
+        }
+        return Arrays.asList(values);
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            merged[k++] = a[i] < b[j] ? a[i++] : b[j++];
+        }
+        while (i < a.length) {
+            merged[k++] = a[i++];
+        }
+        while (j < b.length) {
+            merged[k++] = b[j++];
+        }
+        return merged;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,180 @@
+package com.rags.tools.matcher;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Engine settings of a {@link JsonMatcher}. Unlike {@link MatchSpec}, these do not change what is compared,
+ * only how the comparison is carried out.
+ *
+ * <pre>
+ * Matcher matcher = new JsonMatcher(new MatchOptions.Builder()
+ *         .setAssignmentMode(AssignmentMode.OPTIMAL)
+ *         .create());
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class MatchOptions {
+
+    /**
+     * Greedy assignment on the calling thread, the default of {@link JsonMatcher}.
+     */
+    public static final MatchOptions DEFAULT = new Builder().create();
+
+    private final AssignmentMode assignmentMode;
+    private final int optimalAssignmentLimit;
+    private final ForkJoinPool parallelPool;
+    private final long parallelThreshold;
+    private final boolean compactResults;
+    private final boolean sparseResults;
+    private final ComparisonCache comparisonCache;
+    private final Consumer<MatchStats> statsSink;
+
+    private MatchOptions(Builder builder) {
+        this.assignmentMode = builder.assignmentMode;
+        this.optimalAssignmentLimit = builder.optimalAssignmentLimit;
+        this.parallelPool = builder.parallelPool;
+        this.parallelThreshold = builder.parallelThreshold;
+        this.compactResults = builder.compactResults;
+        this.sparseResults = builder.sparseResults;
+        this.comparisonCache = builder.comparisonCache;
+        this.statsSink = builder.statsSink;
+    }
+
+    public AssignmentMode getAssignmentMode() {
+        return assignmentMode;
+    }
+
+    /**
+     * @return max number of unpaired elements on either side for which {@link AssignmentMode#OPTIMAL} is used
+     */
+    public int getOptimalAssignmentLimit() {
+        return optimalAssignmentLimit;
+    }
+
+    /**
+     * @return pool the rows of large arrays are compared on, null when arrays are compared on the calling thread
+     */
+    public ForkJoinPool getParallelPool() {
+        return parallelPool;
+    }
+
+    /**
+     * @return number of expected x actual candidate pairs of an array below which it is compared sequentially
+     */
+    public long getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * @return true if results record JSON Pointers to the compared objects and arrays instead of retaining them,
+     * see {@link MatchingResult#resolveExp(Object)}
+     */
+    public boolean isCompactResults() {
+        return compactResults;
+    }
+
+    /**
+     * @return true if passing attributes and elements are left out of the diff and only counted, see
+     * {@link MatchingResult#getPassCount()}
+     */
+    public boolean isSparseResults() {
+        return sparseResults;
+    }
+
+    /**
+     * @return cache of passing object and array comparisons shared across calls, null if there is none
+     */
+    public ComparisonCache getComparisonCache() {
+        return comparisonCache;
+    }
+
+    /**
+     * @return receiver of the stats of every comparison, null if stats are not collected
+     */
+    public Consumer<MatchStats> getStatsSink() {
+        return statsSink;
+    }
+
+    public Builder newBuilder() {
+        return new Builder()
+                .setAssignmentMode(assignmentMode)
+                .setOptimalAssignmentLimit(optimalAssignmentLimit)
+                .setParallelPool(parallelPool)
+                .setParallelThreshold(parallelThreshold)
+                .setCompactResults(compactResults)
+                .setSparseResults(sparseResults)
+                .setComparisonCache(comparisonCache)
+                .setStatsSink(statsSink);
+    }
+
+    public static class Builder {
+        private AssignmentMode assignmentMode = AssignmentMode.GREEDY;
+        private int optimalAssignmentLimit = 500;
+        private ForkJoinPool parallelPool;
+        private long parallelThreshold = 10_000;
+        private boolean compactResults;
+        private boolean sparseResults;
+        private ComparisonCache comparisonCache;
+        private Consumer<MatchStats> statsSink;
+
+        public Builder setAssignmentMode(AssignmentMode assignmentMode) {
+            this.assignmentMode = assignmentMode;
+            return this;
+        }
+
+        public Builder setOptimalAssignmentLimit(int optimalAssignmentLimit) {
+            this.optimalAssignmentLimit = optimalAssignmentLimit;
+            return this;
+        }
+
+        /**
+         * @param parallelPool pool to compare large arrays on, e.g. {@link ForkJoinPool#commonPool()}. null to stay on
+         *                     the calling thread
+         */
+        public Builder setParallelPool(ForkJoinPool parallelPool) {
+            this.parallelPool = parallelPool;
+            return this;
+        }
+
+        public Builder setParallelThreshold(long parallelThreshold) {
+            this.parallelThreshold = parallelThreshold;
+            return this;
+        }
+
+        public Builder setCompactResults(boolean compactResults) {
+            this.compactResults = compactResults;
+            return this;
+        }
+
+        public Builder setSparseResults(boolean sparseResults) {
+            this.sparseResults = sparseResults;
+            return this;
+        }
+
+        /**
+         * @param comparisonCache cache to share across calls and matchers, null for none
+         */
+        public Builder setComparisonCache(ComparisonCache comparisonCache) {
+            this.comparisonCache = comparisonCache;
+            return this;
+        }
+
+        /**
+         * @param statsSink receives the stats of every comparison once it is done, e.g. a {@link MatchStatsBinder}.
+         *                  null to collect no stats
+         */
+        public Builder setStatsSink(Consumer<MatchStats> statsSink) {
+            this.statsSink = statsSink;
+            return this;
+        }
+
+        public MatchOptions create() {
+            if (assignmentMode == null) {
+                throw new RuntimeException("Assignment mode is required.");
+            }
+            return new MatchOptions(this);
+        }
+    }
+}
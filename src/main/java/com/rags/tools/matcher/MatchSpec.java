@@ -0,0 +1,284 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiled form of the ignored attributes and business keys.
+ * Both are given as nested maps, an attribute maps to True when it is a leaf or to a nested map for the nested
+ * attributes. Compiling validates them once and turns them into an immutable path trie, one node per nesting level,
+ * so a spec can be shared across threads and reused for any number of comparisons, Vert.x local maps included.
+ *
+ * <pre>
+ * MatchSpec spec = MatchSpec.compile(ignored, businessKey);
+ * MatchingResult result = new JsonMatcher().compare(expected, actual, spec);
+ * </pre>
+ * <p>
+ * Arrays the upstream already sorts by their business key can be declared in the same nested form, they are then paired
+ * in a single merge pass instead of best matching.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class MatchSpec implements Shareable {
+
+    /**
+     * Spec without ignored attributes and business keys.
+     */
+    public static final MatchSpec EMPTY = new MatchSpec(Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.emptyMap(), false);
+
+    private final Set<String> ignored;
+    private final Set<String> ignoredEntirely;
+    private final Set<String> keys;
+    private final Map<String, MatchSpec> children;
+    private final boolean sortedByKey;
+    //Racing threads compute the same value, as String does
+    private int hash;
+
+    private MatchSpec(Set<String> ignored, Set<String> ignoredEntirely, Set<String> keys, Map<String, MatchSpec> children, boolean sortedByKey) {
+        this.ignored = ignored;
+        this.ignoredEntirely = ignoredEntirely;
+        this.keys = keys;
+        this.children = children;
+        this.sortedByKey = sortedByKey;
+    }
+
+    /**
+     * @param ignored Ignore attributes (nested, based on the nesting level comparison), can be null
+     * @return validated spec
+     */
+    public static MatchSpec compile(Map<String, Object> ignored) {
+        return compile(ignored, null);
+    }
+
+    /**
+     * @param ignored     Ignore attributes (nested, based on the nesting level comparison), can be null
+     * @param businessKey Business Key to match the elements, can be null
+     * @return validated spec
+     */
+    public static MatchSpec compile(Map<String, Object> ignored, Map<String, Object> businessKey) {
+        return compile(ignored, businessKey, null);
+    }
+
+    /**
+     * @param ignored     Ignore attributes (nested, based on the nesting level comparison), can be null
+     * @param businessKey Business Key to match the elements, can be null
+     * @param sortedByKey arrays sorted in ascending order of their business key, True for the array under an attribute
+     *                    or a nested map for the arrays further down, can be null
+     * @return validated spec
+     */
+    public static MatchSpec compile(Map<String, Object> ignored, Map<String, Object> businessKey, Map<String, Object> sortedByKey) {
+        validate(ignored);
+        validate(businessKey);
+        validate(sortedByKey);
+        //Key and Ignored shouldn't be same at any level.
+        validateKeyAndIgnored(ignored, businessKey);
+        return build(ignored, businessKey, sortedByKey, false);
+    }
+
+    /**
+     * @return this spec with the top level array declared as sorted in ascending order of its business key
+     */
+    public MatchSpec asSortedByKey() {
+        if (!hasKeys()) {
+            throw new RuntimeException("Array sorted by key needs business keys at the same level.");
+        }
+        return new MatchSpec(ignored, ignoredEntirely, keys, children, true);
+    }
+
+    /**
+     * @return true if the attribute is ignored at this level, either entirely or through a nested spec
+     */
+    public boolean isIgnored(String attr) {
+        return ignored.contains(attr);
+    }
+
+    /**
+     * @return true if the attribute is ignored with True, nested objects and arrays under it are not compared at all
+     */
+    public boolean isIgnoredEntirely(String attr) {
+        return ignoredEntirely.contains(attr);
+    }
+
+    public boolean isKey(String attr) {
+        return keys.contains(attr);
+    }
+
+    /**
+     * @return business key attributes of this level in the order they were declared
+     */
+    public Set<String> getKeys() {
+        return keys;
+    }
+
+    public boolean hasKeys() {
+        return !keys.isEmpty();
+    }
+
+    /**
+     * @return spec for the attributes nested under the given attribute, {@link #EMPTY} if there is none
+     */
+    public MatchSpec getChild(String attr) {
+        return children.getOrDefault(attr, EMPTY);
+    }
+
+    /**
+     * @return true if the array compared with this spec is sorted in ascending order of the business keys
+     */
+    public boolean isSortedByKey() {
+        return sortedByKey;
+    }
+
+    public boolean isEmpty() {
+        return ignored.isEmpty() && keys.isEmpty();
+    }
+
+    /**
+     * Specs are equal when they ignore the same attributes and match on the same keys, declared in the same order, at
+     * every level, however they were compiled.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        } else if (!(o instanceof MatchSpec)) {
+            return false;
+        }
+        MatchSpec spec = (MatchSpec) o;
+        return hashCode() == spec.hashCode() && sortedByKey == spec.sortedByKey && ignored.equals(spec.ignored)
+                && ignoredEntirely.equals(spec.ignoredEntirely) && new ArrayList<>(keys).equals(new ArrayList<>(spec.keys))
+                && children.equals(spec.children);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = (((ignored.hashCode() * 31 + ignoredEntirely.hashCode()) * 31 + new ArrayList<>(keys).hashCode()) * 31
+                    + children.hashCode()) * 31 + (sortedByKey ? 1 : 0);
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * @return ignored attributes in the nested form {@link #compile(Map, Map)} takes, empty if there are none
+     */
+    Map<String, Object> toIgnoredMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String attr : ignored) {
+            Map<String, Object> nested = getChild(attr).toIgnoredMap();
+            map.put(attr, ignoredEntirely.contains(attr) ? Boolean.TRUE : nested.isEmpty() ? Boolean.FALSE : nested);
+        }
+        return map;
+    }
+
+    /**
+     * @return business keys in the nested form {@link #compile(Map, Map)} takes, empty if there are none
+     */
+    Map<String, Object> toBusinessKeyMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String attr : keys) {
+            Map<String, Object> nested = getChild(attr).toBusinessKeyMap();
+            map.put(attr, nested.isEmpty() ? Boolean.TRUE : nested);
+        }
+        return map;
+    }
+
+    private static MatchSpec build(Map<String, Object> ignored, Map<String, Object> businessKey, Map<String, Object> sorted, boolean sortedByKey) {
+        if (sortedByKey && (businessKey == null || businessKey.isEmpty())) {
+            throw new RuntimeException("Array sorted by key needs business keys at the same level.");
+        }
+        if ((ignored == null || ignored.isEmpty()) && (businessKey == null || businessKey.isEmpty()) && (sorted == null || sorted.isEmpty())) {
+            return EMPTY;
+        }
+
+        Set<String> ignoredAttrs = new HashSet<>();
+        Set<String> ignoredEntirely = new HashSet<>();
+        Set<String> keys = new LinkedHashSet<>();
+        Set<String> nested = new HashSet<>();
+
+        if (ignored != null) {
+            ignored.forEach((attr, val) -> {
+                ignoredAttrs.add(attr);
+                if (Boolean.TRUE.equals(val)) {
+                    ignoredEntirely.add(attr);
+                } else if (asMap(val) != null) {
+                    nested.add(attr);
+                }
+            });
+        }
+        if (businessKey != null) {
+            businessKey.forEach((attr, val) -> {
+                keys.add(attr);
+                if (asMap(val) != null) {
+                    nested.add(attr);
+                }
+            });
+        }
+        if (sorted != null) {
+            nested.addAll(sorted.keySet());
+        }
+
+        Map<String, MatchSpec> children = new HashMap<>();
+        for (String attr : nested) {
+            MatchSpec child = build(ignored == null ? null : asMap(ignored.get(attr)), businessKey == null ? null : asMap(businessKey.get(attr)),
+                    sorted == null ? null : asMap(sorted.get(attr)), sorted != null && Boolean.TRUE.equals(sorted.get(attr)));
+            if (child != EMPTY) {
+                children.put(attr, child);
+            }
+        }
+
+        return new MatchSpec(Collections.unmodifiableSet(ignoredAttrs), Collections.unmodifiableSet(ignoredEntirely),
+                Collections.unmodifiableSet(keys), Collections.unmodifiableMap(children), sortedByKey);
+    }
+
+    private static void validate(Map<String, Object> map) {
+        if (map == null) {
+            return;
+        }
+        for (Object val : map.values()) {
+            Map<String, Object> nested = asMap(val);
+            if (nested != null) {
+                validate(nested);
+            } else if (!(val instanceof Boolean)) {
+                throw new RuntimeException("Ignored/BusinessKey is not in correct form. It should be nested Json based on the nested Ignore/businessKeys attributes or True if its leaf level.");
+            }
+        }
+    }
+
+    private static void validateKeyAndIgnored(Map<String, Object> ignored, Map<String, Object> key) {
+        if (ignored == null || key == null) {
+            return;
+        }
+        for (String attr : key.keySet()) {
+            if (ignored.containsKey(attr)) {
+                Map<String, Object> ignoredAttr = asMap(ignored.get(attr));
+                Map<String, Object> keyAttr = asMap(key.get(attr));
+                if (ignoredAttr != null && keyAttr != null) {
+                    validateKeyAndIgnored(ignoredAttr, keyAttr);
+                } else if (ignoredAttr == null && keyAttr == null) {
+                    throw new RuntimeException("Ignored attribute and Key can not be same.");
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object val) {
+        if (val instanceof JsonObject) {
+            return ((JsonObject) val).getMap();
+        } else if (val instanceof Map) {
+            return (Map<String, Object>) val;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,194 @@
+package com.rags.tools.matcher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where a comparison spends its work, see {@link JsonMatcher#compareWithStats(Object, Object, MatchSpec, MatchStats)} and
+ * {@link MatchOptions.Builder#setStatsSink}. Nothing is collected unless stats are asked for.
+ * <p>
+ * Arrays with many candidate pairs are the usual cost, {@link #getExpensivePaths()} tells which ones. Business keys on
+ * them cut the scored pairs down to the elements carrying the same key.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public final class MatchStats {
+
+    private static final int EXPENSIVE_PATHS = 10;
+    private static final Comparator<PathCost> BY_PAIRS = Comparator.comparingLong(PathCost::getCandidatePairs);
+
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder leafComparisons = new LongAdder();
+    private final LongAdder candidatePairs = new LongAdder();
+    private final LongAdder scoredPairs = new LongAdder();
+    private final LongAdder assignmentNanos = new LongAdder();
+    private final LongAdder resultCount = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final PriorityQueue<PathCost> expensivePaths = new PriorityQueue<>(BY_PAIRS);
+    private final LongAdder elapsedNanos = new LongAdder();
+
+    void visit(ResultPath path) {
+        nodesVisited.increment();
+        if (path != null) {
+            maxDepth.accumulateAndGet(path.getDepth(), Math::max);
+        }
+    }
+
+    void leaf() {
+        leafComparisons.increment();
+    }
+
+    void scored(long pairs) {
+        scoredPairs.add(pairs);
+    }
+
+    void result() {
+        resultCount.increment();
+    }
+
+    void array(String path, int expectedSize, int actualSize, long nanos) {
+        PathCost cost = new PathCost(path, expectedSize, actualSize, nanos);
+        candidatePairs.add(cost.getCandidatePairs());
+        assignmentNanos.add(nanos);
+        synchronized (expensivePaths) {
+            if (expensivePaths.size() < EXPENSIVE_PATHS) {
+                expensivePaths.add(cost);
+            } else if (BY_PAIRS.compare(cost, expensivePaths.peek()) > 0) {
+                expensivePaths.poll();
+                expensivePaths.add(cost);
+            }
+        }
+    }
+
+    void elapsed(long nanos) {
+        elapsedNanos.add(nanos);
+    }
+
+    /**
+     * @return number of objects and arrays compared
+     */
+    public long getNodesVisited() {
+        return nodesVisited.sum();
+    }
+
+    /**
+     * @return number of primitive and comparable values compared, while pairing array elements included
+     */
+    public long getLeafComparisons() {
+        return leafComparisons.sum();
+    }
+
+    /**
+     * @return sum of expected x actual sizes of the arrays compared
+     */
+    public long getCandidatePairs() {
+        return candidatePairs.sum();
+    }
+
+    /**
+     * @return number of element pairs scored to pair array elements, what is left of the candidate pairs once identical
+     * elements are paired and business keys narrow the candidates
+     */
+    public long getScoredPairs() {
+        return scoredPairs.sum();
+    }
+
+    /**
+     * @return time spent pairing array elements, summed over the threads that scored them
+     */
+    public Duration getAssignmentTime() {
+        return Duration.ofNanos(assignmentNanos.sum());
+    }
+
+    /**
+     * @return deepest nesting level of the objects and arrays compared, 0 for the root
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * @return number of results built
+     */
+    public long getResultCount() {
+        return resultCount.sum();
+    }
+
+    /**
+     * @return wall clock time of the comparison
+     */
+    public Duration getElapsed() {
+        return Duration.ofNanos(elapsedNanos.sum());
+    }
+
+    /**
+     * @return the arrays with the most candidate pairs, most first
+     */
+    public List<PathCost> getExpensivePaths() {
+        List<PathCost> paths;
+        synchronized (expensivePaths) {
+            paths = new ArrayList<>(expensivePaths);
+        }
+        paths.sort(BY_PAIRS.reversed());
+        return paths;
+    }
+
+    @Override
+    public String toString() {
+        return "MatchStats{nodesVisited=" + getNodesVisited() + ", leafComparisons=" + getLeafComparisons()
+                + ", candidatePairs=" + getCandidatePairs() + ", scoredPairs=" + getScoredPairs()
+                + ", assignmentTime=" + getAssignmentTime() + ", maxDepth=" + getMaxDepth()
+                + ", resultCount=" + getResultCount() + ", elapsed=" + getElapsed()
+                + ", expensivePaths=" + getExpensivePaths() + '}';
+    }
+
+    /**
+     * Size and pairing time of an array.
+     */
+    public static final class PathCost {
+        private final String path;
+        private final int expectedSize;
+        private final int actualSize;
+        private final long assignmentNanos;
+
+        PathCost(String path, int expectedSize, int actualSize, long assignmentNanos) {
+            this.path = path;
+            this.expectedSize = expectedSize;
+            this.actualSize = actualSize;
+            this.assignmentNanos = assignmentNanos;
+        }
+
+        /**
+         * @return JSON Pointer of the array in the expected document
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public int getExpectedSize() {
+            return expectedSize;
+        }
+
+        public int getActualSize() {
+            return actualSize;
+        }
+
+        public long getCandidatePairs() {
+            return (long) expectedSize * actualSize;
+        }
+
+        public Duration getAssignmentTime() {
+            return Duration.ofNanos(assignmentNanos);
+        }
+
+        @Override
+        public String toString() {
+            return path + "=" + expectedSize + "x" + actualSize;
+        }
+    }
+}
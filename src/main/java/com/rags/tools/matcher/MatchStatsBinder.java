@@ -0,0 +1,73 @@
+package com.rags.tools.matcher;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Adds up the {@link MatchStats} of every comparison and publishes the totals as Micrometer meters.
+ * Micrometer is an optional dependency, it is only needed on the classpath when this class is used.
+ *
+ * <pre>
+ * MatchStatsBinder binder = new MatchStatsBinder();
+ * binder.bindTo(registry);
+ * Matcher matcher = new JsonMatcher(new MatchOptions.Builder().setStatsSink(binder).create());
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public class MatchStatsBinder implements MeterBinder, Consumer<MatchStats> {
+
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder elapsedNanos = new LongAdder();
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder leafComparisons = new LongAdder();
+    private final LongAdder candidatePairs = new LongAdder();
+    private final LongAdder scoredPairs = new LongAdder();
+    private final LongAdder assignmentNanos = new LongAdder();
+    private final LongAdder resultCount = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    @Override
+    public void accept(MatchStats stats) {
+        comparisons.increment();
+        elapsedNanos.add(stats.getElapsed().toNanos());
+        nodesVisited.add(stats.getNodesVisited());
+        leafComparisons.add(stats.getLeafComparisons());
+        candidatePairs.add(stats.getCandidatePairs());
+        scoredPairs.add(stats.getScoredPairs());
+        assignmentNanos.add(stats.getAssignmentTime().toNanos());
+        resultCount.add(stats.getResultCount());
+        maxDepth.accumulateAndGet(stats.getMaxDepth(), Math::max);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("json.matcher.compare", this, b -> b.comparisons.sum(), b -> b.elapsedNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Comparisons and their wall clock time")
+                .register(registry);
+        FunctionTimer.builder("json.matcher.assignment", this, b -> b.comparisons.sum(), b -> b.assignmentNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Time spent pairing array elements")
+                .register(registry);
+        counter(registry, "json.matcher.nodes", "Objects and arrays compared", b -> b.nodesVisited.sum());
+        counter(registry, "json.matcher.leaves", "Primitive and comparable values compared", b -> b.leafComparisons.sum());
+        counter(registry, "json.matcher.candidate.pairs", "Expected x actual sizes of the arrays compared", b -> b.candidatePairs.sum());
+        counter(registry, "json.matcher.scored.pairs", "Element pairs scored to pair array elements", b -> b.scoredPairs.sum());
+        counter(registry, "json.matcher.results", "Results built", b -> b.resultCount.sum());
+        Gauge.builder("json.matcher.max.depth", this, b -> b.maxDepth.get())
+                .description("Deepest nesting level compared")
+                .register(registry);
+    }
+
+    private void counter(MeterRegistry registry, String name, String description, ToDoubleFunction<MatchStatsBinder> count) {
+        FunctionCounter.builder(name, this, count).description(description).register(registry);
+    }
+}
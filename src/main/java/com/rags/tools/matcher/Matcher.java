@@ -40,4 +40,33 @@ public interface Matcher {
      */
     MatchingResult compare(Object expected, Object actual, Map<String, Object> ignoreAttributes, Map<String, Object> businessKey);
 
+    /**
+     * Compares two Objects with a precompiled spec, the spec is validated once and can be reused across calls and threads.
+     * Implementations written against the map based overloads get them called back with the maps the spec stands for,
+     * arrays declared sorted by key are then best matched like any other.
+     *
+     * @param expected expected object, can be Primitive, Complex or Array
+     * @param actual   expected object, can be Primitive, Complex or Array
+     * @param spec     compiled ignore attributes and business keys, see {@link MatchSpec#compile(Map, Map)}
+     * @return Matching Results
+     */
+    default MatchingResult compare(Object expected, Object actual, MatchSpec spec) {
+        if (spec == null) {
+            return compare(expected, actual);
+        }
+        return compare(expected, actual, spec.toIgnoredMap(), spec.toBusinessKeyMap());
+    }
+
+    /**
+     * Tells if two Objects match, without building the Matching Results.
+     *
+     * @param expected expected object, can be Primitive, Complex or Array
+     * @param actual   expected object, can be Primitive, Complex or Array
+     * @param spec     compiled ignore attributes and business keys, see {@link MatchSpec#compile(Map, Map)}
+     * @return true if comparing the Objects gives {@link MatchingStatus#P}
+     */
+    default boolean matches(Object expected, Object actual, MatchSpec spec) {
+        return compare(expected, actual, spec).getStatus() == MatchingStatus.P;
+    }
+
 }
@@ -3,6 +3,8 @@ package com.rags.tools.matcher;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -17,9 +19,19 @@ public class MatchingResult {
     private final Map<String, MatchingResult> diff;
     private final Object exp;
     private final Object act;
+    private final String expPath;
+    private final String actPath;
+    private final Integer passCount;
     private MatchingAlgo algo;
+    private BudgetLimit truncated;
+    private boolean readOnly;
 
     public MatchingResult(MatchingStatus status, Map<String, MatchingResult> diff, Object act, Object exp, Integer count, Integer matIndex, Integer elemIndex) {
+        this(status, diff, act, exp, count, matIndex, elemIndex, null, null, null);
+    }
+
+    public MatchingResult(MatchingStatus status, Map<String, MatchingResult> diff, Object act, Object exp, Integer count, Integer matIndex, Integer elemIndex,
+                          String expPath, String actPath, Integer passCount) {
         this.status = status;
         this.diff = diff;
         this.exp = exp;
@@ -27,6 +39,9 @@ public class MatchingResult {
         this.matIndex = matIndex;
         this.elemIndex = elemIndex;
         this.count = count;
+        this.expPath = expPath;
+        this.actPath = actPath;
+        this.passCount = passCount;
     }
 
     public MatchingStatus getStatus() {
@@ -57,6 +72,43 @@ public class MatchingResult {
         return count;
     }
 
+    /**
+     * @return JSON Pointer of the expected object or array in compact results, where it is not retained as exp
+     */
+    public String getExpPath() {
+        return expPath;
+    }
+
+    /**
+     * @return JSON Pointer of the actual object or array in compact results, where it is not retained as act
+     */
+    public String getActPath() {
+        return actPath;
+    }
+
+    /**
+     * @return number of passing entries sparse results leave out of the diff, null for full results
+     */
+    public Integer getPassCount() {
+        return passCount;
+    }
+
+    /**
+     * @param expected the expected object given to compare
+     * @return expected value of this result, fetched from the expected object when it was not retained
+     */
+    public Object resolveExp(Object expected) {
+        return exp != null || expPath == null ? exp : ResultPath.resolve(expected, expPath);
+    }
+
+    /**
+     * @param actual the actual object given to compare
+     * @return actual value of this result, fetched from the actual object when it was not retained
+     */
+    public Object resolveAct(Object actual) {
+        return act != null || actPath == null ? act : ResultPath.resolve(actual, actPath);
+    }
+
     @JsonIgnore
     public boolean isAllMatching() {
         return status == MatchingStatus.P;
@@ -72,9 +124,51 @@ public class MatchingResult {
     }
 
     public void setAlgo(MatchingAlgo algo) {
+        checkWritable();
         this.algo = algo;
     }
 
+    /**
+     * @return budget limit that stopped the comparison, set on the top level result only. null if it ran to the end.
+     * Values left out are reported {@link MatchingStatus#TR}.
+     */
+    public BudgetLimit getTruncated() {
+        return truncated;
+    }
+
+    void setTruncated(BudgetLimit truncated) {
+        checkWritable();
+        this.truncated = truncated;
+    }
+
+    /**
+     * @return this result if read-only, otherwise a copy whose diff, nested results included, can not be modified
+     */
+    MatchingResult readOnly() {
+        if (readOnly) {
+            return this;
+        }
+        Map<String, MatchingResult> readOnlyDiff = null;
+        if (diff != null) {
+            readOnlyDiff = new LinkedHashMap<>(diff.size() * 4 / 3 + 1);
+            for (Map.Entry<String, MatchingResult> entry : diff.entrySet()) {
+                readOnlyDiff.put(entry.getKey(), entry.getValue().readOnly());
+            }
+            readOnlyDiff = Collections.unmodifiableMap(readOnlyDiff);
+        }
+        MatchingResult copy = new MatchingResult(status, readOnlyDiff, act, exp, count, matIndex, elemIndex, expPath, actPath, passCount);
+        copy.algo = algo;
+        copy.truncated = truncated;
+        copy.readOnly = true;
+        return copy;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Result is shared through a ComparisonCache and can not be modified.");
+        }
+    }
+
 
     public Builder newBuilder() {
         return new Builder()
@@ -84,7 +178,10 @@ public class MatchingResult {
                 .setActualValue(act)
                 .setMatchingIndex(matIndex)
                 .setElementIndex(elemIndex)
-                .setMatchingCount(count);
+                .setMatchingCount(count)
+                .setExpectedPath(expPath)
+                .setActualPath(actPath)
+                .setPassCount(passCount);
 
     }
 
@@ -96,7 +193,11 @@ public class MatchingResult {
         private Map<String, MatchingResult> difference;
         private Object expectedValue;
         private Object actualValue;
+        private String expectedPath;
+        private String actualPath;
+        private Integer passCount;
         private MatchingAlgo algo;
+        private BudgetLimit truncated;
 
         public Builder setMatchingStatus(MatchingStatus matchingStatus) {
             this.matchingStatus = matchingStatus;
@@ -132,6 +233,21 @@ public class MatchingResult {
             return this;
         }
 
+        public Builder setExpectedPath(String expPath) {
+            this.expectedPath = expPath;
+            return this;
+        }
+
+        public Builder setActualPath(String actPath) {
+            this.actualPath = actPath;
+            return this;
+        }
+
+        public Builder setPassCount(Integer passCount) {
+            this.passCount = passCount;
+            return this;
+        }
+
         public Builder setMatchingCount(Integer matchingCount) {
             this.matchingCount = matchingCount;
             return this;
@@ -145,6 +261,11 @@ public class MatchingResult {
             return algo;
         }
 
+        public Builder setTruncated(BudgetLimit truncated) {
+            this.truncated = truncated;
+            return this;
+        }
+
         public boolean isPassing() {
             return matchingStatus == MatchingStatus.P;
         }
@@ -158,8 +279,9 @@ public class MatchingResult {
         }
 
         MatchingResult create() {
-            MatchingResult matchingResult = new MatchingResult(matchingStatus, difference, actualValue, expectedValue, matchingCount, matchingIndex, elementIndex);
+            MatchingResult matchingResult = new MatchingResult(matchingStatus, difference, actualValue, expectedValue, matchingCount, matchingIndex, elementIndex, expectedPath, actualPath, passCount);
             matchingResult.setAlgo(algo);
+            matchingResult.setTruncated(truncated);
             return matchingResult;
         }
     }
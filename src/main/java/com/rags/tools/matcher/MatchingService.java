@@ -0,0 +1,75 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Specs registered by id and comparisons writing their differences, what {@link MatchingVerticle} serves over HTTP
+ * and the event bus.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class MatchingService {
+
+    private final JsonMatcher matcher;
+    private final Map<String, MatchSpec> specs;
+
+    /**
+     * @param specs registry of compiled specs, shared by the instances of the verticle serving the same address
+     */
+    MatchingService(JsonMatcher matcher, Map<String, MatchSpec> specs) {
+        this.matcher = matcher;
+        this.specs = specs;
+    }
+
+    /**
+     * Compiles a spec once, to be referred to by id by any later comparison.
+     *
+     * @param definition {@code {"ignored": {...}, "businessKey": {...}, "sortedByKey": {...}}}, each of them optional
+     */
+    void register(String id, JsonObject definition) {
+        if (id == null || id.isEmpty()) {
+            throw new RuntimeException("Spec id is required.");
+        }
+        specs.put(id, MatchSpec.compile(attributes(definition, "ignored"), attributes(definition, "businessKey"), attributes(definition, "sortedByKey")));
+    }
+
+    /**
+     * @return spec registered under the id, {@link MatchSpec#EMPTY} without id, null if the id is unknown
+     */
+    MatchSpec getSpec(String id) {
+        return id == null || id.isEmpty() ? MatchSpec.EMPTY : specs.get(id);
+    }
+
+    /**
+     * Compares and writes the differences to the stream, the stream is closed.
+     */
+    MatchingStatus compare(MatchSpec spec, Object expected, Object actual, DiffWriter.Format format, OutputStream out) throws IOException {
+        try (DiffWriter writer = new DiffWriter(out, format)) {
+            return matcher.report(expected, actual, spec, writer);
+        }
+    }
+
+    /**
+     * Compares and adds the operations of the JSON Patch of the differences to the array.
+     */
+    MatchingStatus compare(MatchSpec spec, Object expected, Object actual, JsonArray patch) {
+        return matcher.report(expected, actual, spec, new DiffWriter(patch));
+    }
+
+    /**
+     * @return {@link DiffWriter.Format#NDJSON} for "ndjson", {@link DiffWriter.Format#JSON_PATCH} otherwise
+     */
+    static DiffWriter.Format format(String name) {
+        return "ndjson".equalsIgnoreCase(name) ? DiffWriter.Format.NDJSON : DiffWriter.Format.JSON_PATCH;
+    }
+
+    private static Map<String, Object> attributes(JsonObject definition, String name) {
+        JsonObject attributes = definition == null ? null : definition.getJsonObject(name);
+        return attributes == null ? null : attributes.getMap();
+    }
+}
@@ -5,7 +5,7 @@ package com.rags.tools.matcher;
  * @since 11-02-2019
  */
 public enum MatchingStatus {
-    P("PASS"), PK("KEY_MATCHING"),  F("FAIL"), NE("NOT_EXISTS"), NW("NEW"), OM("OBJECT_MISMATCH"), IGN("IGNORED");
+    P("PASS"), PK("KEY_MATCHING"),  F("FAIL"), NE("NOT_EXISTS"), NW("NEW"), OM("OBJECT_MISMATCH"), IGN("IGNORED"), TR("TRUNCATED");
 
     private final String desc;
 
@@ -0,0 +1,287 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Promise;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEventType;
+import io.vertx.core.parsetools.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Serves matching over HTTP and the event bus, with specs compiled once and registered by id.
+ * <ul>
+ * <li>{@code PUT /specs/{id}} with {@code {"ignored": {...}, "businessKey": {...}, "sortedByKey": {...}}} registers a spec.</li>
+ * <li>{@code POST /compare/{id}?format=patch|ndjson} with {@code {"expected": ..., "actual": ...}} compares with the spec
+ * (none for {@code POST /compare}). The response is the JSON Patch or the NDJSON lines of {@link DiffWriter}, sent in
+ * chunks as the differences are found, the status of the comparison is in the {@code X-Match-Status} trailer.</li>
+ * <li>Event bus {@code <address>.spec} registers {@code {"id", "ignored", "businessKey", "sortedByKey"}} and
+ * {@code <address>.compare} replies {@code {"status", "diff"}} to {@code {"spec", "expected", "actual"}}.</li>
+ * </ul>
+ * Request bodies are parsed as they arrive and responses are written with back-pressure, the worker waits while the
+ * client does not keep up. Comparisons run on a bounded worker pool and at most {@code maxInFlight} HTTP comparisons
+ * are read or run at a time, further requests are paused, so their bodies are not read, until one completes. A
+ * comparison whose client disconnects keeps its slot until its worker stops.
+ * <p>
+ * Specs live in a local map of the Vert.x instance named after the address, every instance of the verticle serving the
+ * same address sees the same specs.
+ * <p>
+ * Config: {@code port} (8080), {@code address} ("json-matcher"), {@code workerPoolSize} (4), {@code maxInFlight} (64).
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public class MatchingVerticle extends AbstractVerticle {
+
+    private static final String SPECS_PATH = "/specs/";
+    private static final String COMPARE_PATH = "/compare";
+    private static final String STATUS_TRAILER = "X-Match-Status";
+
+    private final JsonMatcher matcher;
+
+    private MatchingService service;
+    private WorkerExecutor workers;
+    private HttpServer server;
+    private int maxInFlight;
+
+    //Only touched on the context of the verticle
+    private int inFlight;
+    private final Deque<HttpServerRequest> waiting = new ArrayDeque<>();
+
+    public MatchingVerticle() {
+        this(new JsonMatcher());
+    }
+
+    /**
+     * @param matcher matcher the comparisons are run with, e.g. with compact or parallel {@link MatchOptions}
+     */
+    public MatchingVerticle(JsonMatcher matcher) {
+        this.matcher = matcher == null ? new JsonMatcher() : matcher;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        JsonObject config = config();
+        String address = config.getString("address", "json-matcher");
+        maxInFlight = config.getInteger("maxInFlight", 64);
+        service = new MatchingService(matcher, vertx.sharedData().<String, MatchSpec>getLocalMap(address + ".specs"));
+        workers = vertx.createSharedWorkerExecutor("json-matcher-workers", config.getInteger("workerPoolSize", 4));
+
+        vertx.eventBus().<JsonObject>consumer(address + ".spec", this::registerSpec);
+        vertx.eventBus().<JsonObject>consumer(address + ".compare", this::compare);
+
+        server = vertx.createHttpServer().requestHandler(this::handle);
+        server.listen(config.getInteger("port", 8080), listening -> {
+            if (listening.succeeded()) {
+                startPromise.complete();
+            } else {
+                startPromise.fail(listening.cause());
+            }
+        });
+    }
+
+    @Override
+    public void stop(Promise<Void> stopPromise) {
+        workers.close();
+        stopPromise.complete();
+    }
+
+    /**
+     * @return context the state of the verticle is touched on
+     */
+    Context getContext() {
+        return context;
+    }
+
+    /**
+     * @return HTTP comparisons admitted and not completed yet, to be read on the context of the verticle
+     */
+    int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return HTTP comparisons paused until a slot frees up, to be read on the context of the verticle
+     */
+    int getWaiting() {
+        return waiting.size();
+    }
+
+    private void handle(HttpServerRequest request) {
+        String path = request.path();
+        if (request.method() == HttpMethod.PUT && path.startsWith(SPECS_PATH)) {
+            request.bodyHandler(body -> {
+                try {
+                    service.register(path.substring(SPECS_PATH.length()), new JsonObject(body.toString()));
+                    request.response().setStatusCode(204).end();
+                } catch (RuntimeException e) {
+                    request.response().setStatusCode(400).end(String.valueOf(e.getMessage()));
+                }
+            });
+        } else if (request.method() == HttpMethod.POST && (path.equals(COMPARE_PATH) || path.startsWith(COMPARE_PATH + "/"))) {
+            //Not read any further until admitted
+            request.pause();
+            if (inFlight < maxInFlight) {
+                admit(request);
+            } else {
+                waiting.add(request);
+            }
+        } else {
+            request.response().setStatusCode(404).end();
+        }
+    }
+
+    private void admit(HttpServerRequest request) {
+        inFlight++;
+        Comparison comparison = new Comparison(request);
+        String path = request.path();
+        MatchSpec spec = service.getSpec(path.length() > COMPARE_PATH.length() ? path.substring(COMPARE_PATH.length() + 1) : null);
+        if (spec == null) {
+            request.resume();
+            comparison.respond(404, "Unknown spec.");
+            return;
+        }
+
+        //The fields of the body are parsed as its chunks arrive, each value is built as a whole
+        Object[] values = new Object[2];
+        JsonParser parser = JsonParser.newParser(request);
+        parser.handler(event -> {
+            if (event.type() == JsonEventType.START_OBJECT && event.fieldName() == null) {
+                parser.objectValueMode().arrayValueMode();
+            } else if (event.type() == JsonEventType.VALUE && "expected".equals(event.fieldName())) {
+                values[0] = JsonValues.wrap(event.value());
+            } else if (event.type() == JsonEventType.VALUE && "actual".equals(event.fieldName())) {
+                values[1] = JsonValues.wrap(event.value());
+            }
+        });
+        parser.exceptionHandler(e -> comparison.respond(400, "Invalid JSON body."));
+        parser.endHandler(end -> {
+            if (comparison.done) {
+                return;
+            }
+            DiffWriter.Format format = MatchingService.format(request.getParam("format"));
+            //The status is only known once the differences are sent, it follows them as a trailer
+            HttpServerResponse response = request.response()
+                    .setChunked(true)
+                    .putHeader("Content-Type", format == DiffWriter.Format.NDJSON ? "application/x-ndjson" : "application/json-patch+json")
+                    .putHeader("Trailer", STATUS_TRAILER);
+            WriteStreamOutputStream out = new WriteStreamOutputStream(context, response);
+            comparison.out = out;
+            workers.<MatchingStatus>executeBlocking(promise -> {
+                try {
+                    promise.complete(service.compare(spec, values[0], values[1], format, out));
+                } catch (Exception e) {
+                    promise.fail(e);
+                }
+            }, false, comparison::completed);
+        });
+        request.resume();
+    }
+
+    /**
+     * An admitted HTTP comparison, it frees its slot once when answered or, while its body is still read, when the
+     * connection closes.
+     */
+    private final class Comparison {
+        private final HttpServerRequest request;
+        //Set once the comparison runs on a worker
+        private WriteStreamOutputStream out;
+        private boolean done;
+
+        private Comparison(HttpServerRequest request) {
+            this.request = request;
+            request.response().closeHandler(closed -> closed());
+        }
+
+        private void closed() {
+            if (out == null) {
+                release();
+            } else {
+                //The worker fails on its next chunk, the slot is freed once it completes
+                out.abort(new IOException("Connection closed."));
+            }
+        }
+
+        private void completed(AsyncResult<MatchingStatus> compared) {
+            HttpServerResponse response = request.response();
+            if (response.closed()) {
+                release();
+            } else if (compared.succeeded()) {
+                response.putTrailer(STATUS_TRAILER, compared.result().name()).end();
+                release();
+            } else if (!response.headWritten()) {
+                respond(500, String.valueOf(compared.cause().getMessage()));
+            } else {
+                //Part of the differences is sent, the client has to see the response cut short
+                response.reset();
+                release();
+            }
+        }
+
+        private void respond(int statusCode, String message) {
+            if (!done) {
+                request.response().setStatusCode(statusCode).end(message);
+                release();
+            }
+        }
+
+        private void release() {
+            if (done) {
+                return;
+            }
+            done = true;
+            inFlight--;
+            //Requests whose connection closed while waiting are dropped
+            HttpServerRequest next = waiting.poll();
+            while (next != null && next.response().closed()) {
+                next = waiting.poll();
+            }
+            if (next != null) {
+                admit(next);
+            }
+        }
+    }
+
+    private void registerSpec(Message<JsonObject> message) {
+        try {
+            service.register(message.body().getString("id"), message.body());
+            message.reply(new JsonObject().put("id", message.body().getString("id")));
+        } catch (RuntimeException e) {
+            message.fail(400, e.getMessage());
+        }
+    }
+
+    private void compare(Message<JsonObject> message) {
+        JsonObject body = message.body();
+        MatchSpec spec = service.getSpec(body.getString("spec"));
+        if (spec == null) {
+            message.fail(404, "Unknown spec.");
+            return;
+        }
+        workers.<JsonObject>executeBlocking(promise -> {
+            try {
+                JsonArray patch = new JsonArray();
+                MatchingStatus status = service.compare(spec, body.getValue("expected"), body.getValue("actual"), patch);
+                promise.complete(new JsonObject().put("status", status.name()).put("diff", patch));
+            } catch (Exception e) {
+                promise.fail(e);
+            }
+        }, false, compared -> {
+            if (compared.succeeded()) {
+                message.reply(compared.result());
+            } else {
+                message.fail(500, String.valueOf(compared.cause().getMessage()));
+            }
+        });
+    }
+}
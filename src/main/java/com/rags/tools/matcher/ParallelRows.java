@@ -0,0 +1,70 @@
+package com.rags.tools.matcher;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs independent rows of the array matching on a ForkJoinPool.
+ * Every row writes only its own slot, so the outcome does not depend on the order rows are run in.
+ * Nested arrays compared from inside a row join the same pool through work stealing instead of blocking a worker.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class ParallelRows {
+
+    private ParallelRows() {
+    }
+
+    /**
+     * @param pool      pool to run on, rows run sequentially on the calling thread when null
+     * @param rows      number of rows
+     * @param work      estimated work of all the rows, usually the number of candidate pairs
+     * @param threshold work below which the rows run sequentially
+     * @param body      work of one row
+     */
+    static void forEach(ForkJoinPool pool, int rows, long work, long threshold, IntConsumer body) {
+        if (pool == null || rows < 2 || work < threshold) {
+            for (int i = 0; i < rows; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+
+        RowsTask task = new RowsTask(body, 0, rows, Math.max(1, rows / (pool.getParallelism() * 4)));
+        if (ForkJoinTask.getPool() == pool) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private static final class RowsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer body;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        private RowsTask(IntConsumer body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int i = from; i < to; i++) {
+                    body.accept(i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RowsTask(body, from, mid, grain), new RowsTask(body, mid, to, grain));
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.rags.tools.matcher;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializer;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Reads POJOs as JSON values without serializing them. Per class, the properties Jackson would write are read once
+ * from its bean serializer, so @JsonProperty, @JsonIgnore, naming strategies and the like apply, and turned into
+ * method handles over the getters and fields. POJOs are then seen through read-only Map and List views that read a
+ * property only when the matcher asks for it, leaf values read the same as after the Jackson round trip.
+ * <p>
+ * Classes Jackson writes some other way (custom serializers, @JsonValue, @JsonFormat, type ids, any getters, filters,
+ * object ids, inclusion other than non null) and values without a JSON counterpart of their own, like dates, still go
+ * through the round trip, one value at a time.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class PojoValues {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<Plan> PLANS = new ClassValue<Plan>() {
+        @Override
+        protected Plan computeValue(Class<?> type) {
+            return Plan.of(type);
+        }
+    };
+
+    private static final ClassValue<Object[]> ENUMS = new ClassValue<Object[]>() {
+        @Override
+        protected Object[] computeValue(Class<?> type) {
+            Object[] constants = type.getEnumConstants();
+            Object[] values = new Object[constants.length];
+            for (int i = 0; i < constants.length; i++) {
+                values[i] = roundTrip(constants[i]);
+            }
+            return values;
+        }
+    };
+
+    private PojoValues() {
+    }
+
+    /**
+     * @return the value as the matcher reads it: null, a leaf value, a Map or a List, read lazily where possible
+     */
+    static Object read(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Double || value instanceof Float || value instanceof BigInteger) {
+            return value;
+        } else if (value instanceof Short || value instanceof Byte) {
+            return ((Number) value).intValue();
+        } else if (value instanceof BigDecimal) {
+            //Written as its toString, read back as a double
+            return Double.valueOf(value.toString());
+        } else if (value instanceof Character) {
+            return value.toString();
+        } else if (value instanceof Enum) {
+            return ENUMS.get(((Enum<?>) value).getDeclaringClass())[((Enum<?>) value).ordinal()];
+        } else if (value instanceof JsonObject) {
+            return read(((JsonObject) value).getMap());
+        } else if (value instanceof JsonArray) {
+            return read(((JsonArray) value).getList());
+        } else if (value instanceof Map) {
+            return hasStringKeys((Map<?, ?>) value) ? new MapView((Map<?, ?>) value) : roundTrip(value);
+        } else if (value instanceof List && value instanceof RandomAccess) {
+            return new ListView(((List<?>) value)::get, ((List<?>) value).size());
+        } else if (value instanceof Collection) {
+            Object[] elements = ((Collection<?>) value).toArray();
+            return new ListView(i -> elements[i], elements.length);
+        } else if (value.getClass().isArray()) {
+            //byte[] and char[] are written as strings
+            return value instanceof byte[] || value instanceof char[] ? roundTrip(value) : new ListView(i -> Array.get(value, i), Array.getLength(value));
+        }
+
+        Plan plan = PLANS.get(value.getClass());
+        return plan == null ? roundTrip(value) : new PojoView(plan, value);
+    }
+
+    private static boolean hasStringKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object roundTrip(Object value) {
+        return Json.decodeValue(Json.encode(value));
+    }
+
+    /**
+     * Properties of a class, in the order Jackson writes them.
+     */
+    private static final class Plan {
+        private final String[] names;
+        private final MethodHandle[] getters;
+        private final boolean[] suppressNulls;
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Set<String> keys;
+        private final boolean anySuppressed;
+
+        private Plan(List<String> names, List<MethodHandle> getters, List<Boolean> suppressNulls) {
+            this.names = names.toArray(new String[0]);
+            this.getters = getters.toArray(new MethodHandle[0]);
+            this.suppressNulls = new boolean[names.size()];
+            boolean anySuppressed = false;
+            for (int i = 0; i < this.names.length; i++) {
+                index.put(this.names[i], i);
+                this.suppressNulls[i] = suppressNulls.get(i);
+                anySuppressed |= this.suppressNulls[i];
+            }
+            this.keys = Collections.unmodifiableSet(new LinkedHashSet<>(names));
+            this.anySuppressed = anySuppressed;
+        }
+
+        /**
+         * @return plan of the class, null if Jackson does not write it as a plain bean
+         */
+        private static Plan of(Class<?> type) {
+            try {
+                SerializationConfig config = Json.mapper.getSerializationConfig();
+                JavaType javaType = Json.mapper.constructType(type);
+                JsonSerializer<Object> serializer = Json.mapper.getSerializerProviderInstance().findValueSerializer(type);
+                if (serializer.getClass() != BeanSerializer.class || ((BeanSerializer) serializer).usesObjectId()
+                        || Json.mapper.getSerializerFactory().createTypeSerializer(config, javaType) != null
+                        || config.introspect(javaType).findAnyGetter() != null
+                        || type.isAnnotationPresent(JsonFilter.class)
+                        || !isPlainInclusion(config.getDefaultPropertyInclusion().getValueInclusion(), config.getDefaultPropertyInclusion().getContentInclusion())
+                        || !isPlainInclusion(type.getAnnotation(JsonInclude.class))) {
+                    return null;
+                }
+
+                List<String> names = new ArrayList<>();
+                List<MethodHandle> getters = new ArrayList<>();
+                List<Boolean> suppressNulls = new ArrayList<>();
+                for (Iterator<PropertyWriter> it = ((BeanSerializer) serializer).properties(); it.hasNext(); ) {
+                    PropertyWriter property = it.next();
+                    if (property.getClass() != BeanPropertyWriter.class) {
+                        return null;
+                    }
+                    BeanPropertyWriter writer = (BeanPropertyWriter) property;
+                    if (writer.getTypeSerializer() != null || writer.getAnnotation(JsonSerialize.class) != null
+                            || writer.getAnnotation(JsonFormat.class) != null || writer.getAnnotation(JsonRawValue.class) != null
+                            || !isPlainInclusion(writer.getAnnotation(JsonInclude.class))) {
+                        return null;
+                    }
+
+                    Member member = writer.getMember().getMember();
+                    MethodHandle getter = member instanceof Method ? LOOKUP.unreflect((Method) member) : LOOKUP.unreflectGetter((Field) member);
+                    names.add(writer.getName());
+                    getters.add(getter.asType(GETTER));
+                    suppressNulls.add(writer.willSuppressNulls());
+                }
+                return new Plan(names, getters, suppressNulls);
+            } catch (IllegalAccessException | JsonMappingException | RuntimeException e) {
+                //Not readable as a plain bean, the round trip decides
+                return null;
+            }
+        }
+
+        private static boolean isPlainInclusion(JsonInclude include) {
+            return include == null || isPlainInclusion(include.value(), include.content());
+        }
+
+        private static boolean isPlainInclusion(JsonInclude.Include value, JsonInclude.Include content) {
+            return (value == null || value == JsonInclude.Include.ALWAYS || value == JsonInclude.Include.NON_NULL || value == JsonInclude.Include.USE_DEFAULTS)
+                    && (content == null || content == JsonInclude.Include.ALWAYS || content == JsonInclude.Include.USE_DEFAULTS);
+        }
+    }
+
+    /**
+     * @return true when the value is one of the read-only views of this class
+     */
+    static boolean isView(Object value) {
+        return value instanceof PojoView || value instanceof MapView || value instanceof ListView;
+    }
+
+    /**
+     * Read-only view of a POJO. Its properties are read once, nested values are turned into views when first asked for.
+     */
+    private static final class PojoView extends AbstractMap<String, Object> {
+        private final Plan plan;
+        private final Object[] raw;
+        private final Object[] values;
+        private final Set<String> keys;
+
+        private PojoView(Plan plan, Object bean) {
+            this.plan = plan;
+            this.raw = new Object[plan.names.length];
+            this.values = new Object[plan.names.length];
+            for (int i = 0; i < raw.length; i++) {
+                try {
+                    raw[i] = plan.getters[i].invokeExact(bean);
+                } catch (Throwable e) {
+                    throw new RuntimeException("Could not read " + plan.names[i] + " of " + bean.getClass().getName(), e);
+                }
+            }
+
+            if (plan.anySuppressed) {
+                Set<String> present = new LinkedHashSet<>();
+                for (int i = 0; i < raw.length; i++) {
+                    if (raw[i] != null || !plan.suppressNulls[i]) {
+                        present.add(plan.names[i]);
+                    }
+                }
+                this.keys = Collections.unmodifiableSet(present);
+            } else {
+                this.keys = plan.keys;
+            }
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer i = plan.index.get(key);
+            if (i == null) {
+                return null;
+            }
+            //Racing threads read the same value, either copy will do
+            Object value = values[i];
+            if (value == null && raw[i] != null) {
+                value = read(raw[i]);
+                values[i] = value;
+            }
+            return value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return keys.contains(key);
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return keys;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new EntrySet(this);
+        }
+    }
+
+    /**
+     * Read-only view of a String keyed Map, reading its values as they are asked for.
+     */
+    private static final class MapView extends AbstractMap<String, Object> {
+        private final Map<?, ?> map;
+
+        private MapView(Map<?, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return read(map.get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet((Set<String>) map.keySet());
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new EntrySet(this);
+        }
+    }
+
+    private static final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+        private final Map<String, Object> view;
+
+        private EntrySet(Map<String, Object> view) {
+            this.view = view;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            Iterator<String> keys = view.keySet().iterator();
+            return new Iterator<Map.Entry<String, Object>>() {
+                @Override
+                public boolean hasNext() {
+                    return keys.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                    String key = keys.next();
+                    return new AbstractMap.SimpleImmutableEntry<>(key, view.get(key));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return view.size();
+        }
+    }
+
+    /**
+     * Read-only view of a collection or array, reading its elements as they are asked for.
+     */
+    private static final class ListView extends AbstractList<Object> implements RandomAccess {
+        private final IntFunction<Object> elements;
+        private final Object[] values;
+
+        private ListView(IntFunction<Object> elements, int size) {
+            this.elements = elements;
+            this.values = new Object[size];
+        }
+
+        @Override
+        public Object get(int index) {
+            Object value = values[index];
+            if (value == null) {
+                value = read(elements.apply(index));
+                values[index] = value;
+            }
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.rags.tools.matcher;
+
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Results of the objects and arrays of a comparison by their JSON Pointers, so that comparing again after a change
+ * only recomputes what the change affects, see {@link IncrementalComparison}.
+ * Keys start with the actual pointer, so everything below a changed value is one sorted range.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class ResultCache {
+
+    private static final char SEPARATOR = '\0';
+
+    private final ConcurrentNavigableMap<String, MatchingResult> results = new ConcurrentSkipListMap<>();
+
+    /**
+     * @return previous result of the pair of values at this path, null if there is none
+     */
+    MatchingResult get(ResultPath path) {
+        return path.getExp() == null || path.getAct() == null ? null : results.get(key(path));
+    }
+
+    MatchingResult put(ResultPath path, MatchingResult result) {
+        if (path.getExp() != null && path.getAct() != null) {
+            results.put(key(path), result);
+        }
+        return result;
+    }
+
+    /**
+     * Drops the results holding a value of the actual document that changed: the value itself, everything below it
+     * and every object or array above it.
+     *
+     * @param changed JSON Pointer of the changed value in the actual document
+     */
+    void invalidate(String changed) {
+        results.subMap(changed + '/', changed + (char) ('/' + 1)).clear();
+        String pointer = changed;
+        while (true) {
+            results.subMap(pointer + SEPARATOR, pointer + (char) (SEPARATOR + 1)).clear();
+            if (pointer.isEmpty()) {
+                return;
+            }
+            pointer = pointer.substring(0, Math.max(0, pointer.lastIndexOf('/')));
+        }
+    }
+
+    private static String key(ResultPath path) {
+        return path.getAct() + SEPARATOR + path.getExp();
+    }
+}
@@ -0,0 +1,103 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.json.JsonArray;
+
+import java.util.List;
+
+/**
+ * JSON Pointers (RFC 6901) of the value being compared, in the expected and in the actual document.
+ * The two differ below arrays, where an expected element is paired with an actual element at another index.
+ * Compact results record these pointers instead of retaining objects and arrays.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class ResultPath {
+
+    static final ResultPath ROOT = new ResultPath("", "", 0);
+
+    /**
+     * Root that only tracks the nesting depth, for comparison budgets without compact results.
+     */
+    static final ResultPath DEPTH_ONLY = new ResultPath(null, null, 0);
+
+    private final String exp;
+    private final String act;
+    private final int depth;
+
+    private ResultPath(String exp, String act, int depth) {
+        this.exp = exp;
+        this.act = act;
+        this.depth = depth;
+    }
+
+    String getExp() {
+        return exp;
+    }
+
+    String getAct() {
+        return act;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    ResultPath attr(String attr) {
+        String token = exp == null && act == null ? null : escape(attr);
+        return new ResultPath(exp == null ? null : exp + '/' + token, act == null ? null : act + '/' + token, depth + 1);
+    }
+
+    /**
+     * @param elemIndex index in the expected array, negative if the element is new
+     * @param matIndex  index in the actual array, negative if the element is missing
+     */
+    ResultPath element(int elemIndex, int matIndex) {
+        return new ResultPath(exp == null || elemIndex < 0 ? null : exp + '/' + elemIndex, act == null || matIndex < 0 ? null : act + '/' + matIndex, depth + 1);
+    }
+
+    /**
+     * @param root    document the pointer was recorded against
+     * @param pointer JSON Pointer, "" for the whole document
+     * @return value the pointer points to, null if it does not point to any value
+     */
+    static Object resolve(Object root, String pointer) {
+        if (pointer == null || root == null) {
+            return null;
+        }
+        Object current = root;
+        int from = 1;
+        while (from <= pointer.length()) {
+            int to = pointer.indexOf('/', from);
+            String token = unescape(pointer.substring(from, to < 0 ? pointer.length() : to));
+            if (current == null) {
+                return null;
+            } else if (current instanceof JsonArray || current instanceof List || current.getClass().isArray()) {
+                JsonArray array = JsonValues.toJsonArray(current);
+                int index;
+                try {
+                    index = Integer.parseInt(token);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                current = index < 0 || index >= array.size() ? null : array.getValue(index);
+            } else if (JsonValues.isComparable(current)) {
+                return null;
+            } else {
+                current = JsonValues.toJsonObject(current).getValue(token);
+            }
+            if (to < 0) {
+                break;
+            }
+            from = to + 1;
+        }
+        return current;
+    }
+
+    private static String escape(String token) {
+        return token.indexOf('~') < 0 && token.indexOf('/') < 0 ? token : token.replace("~", "~0").replace("/", "~1");
+    }
+
+    static String unescape(String token) {
+        return token.indexOf('~') < 0 ? token : token.replace("~1", "/").replace("~0", "~");
+    }
+}
@@ -0,0 +1,139 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.json.JsonArray;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pairs two arrays sorted in ascending order of their business key in a single merge pass, without a cross product
+ * or an index. Elements sharing a key are paired in array order, an expected key the actual array skips is left
+ * unpaired and so is an actual key the expected array skips.
+ * <p>
+ * Keys order null first, then booleans, integral numbers by value, floating-point numbers by value and strings. Integral
+ * and floating-point numbers never match each other, so 1 sorts before 1.0 rather than with it. Arrays that turn out not
+ * to be sorted, or to hold elements that can not be keyed, are left to best matching.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class SortedMerge {
+
+    private SortedMerge() {
+    }
+
+    /**
+     * @return per expected element, index of the actual element with the same key or -1 if it has none.
+     * null if either array is not sorted by the keys.
+     */
+    static int[] assign(JsonArray expected, JsonArray actual, Set<String> keyAttributes) {
+        String[] keys = keyAttributes.toArray(new String[0]);
+        int[] assigned = new int[expected.size()];
+        Arrays.fill(assigned, -1);
+
+        int i = 0, j = 0;
+        List<Object> expKey = null, actKey = null;
+        if (!expected.isEmpty() && (expKey = nextKey(expected, 0, null, keys)) == null
+                || !actual.isEmpty() && (actKey = nextKey(actual, 0, null, keys)) == null) {
+            return null;
+        }
+
+        while (i < expected.size() && j < actual.size()) {
+            int cmp = compareKeys(expKey, actKey);
+            if (cmp <= 0) {
+                if (cmp == 0) {
+                    assigned[i] = j;
+                    if (++j < actual.size() && (actKey = nextKey(actual, j, actKey, keys)) == null) {
+                        return null;
+                    }
+                }
+                if (++i < expected.size() && (expKey = nextKey(expected, i, expKey, keys)) == null) {
+                    return null;
+                }
+            } else if (++j < actual.size() && (actKey = nextKey(actual, j, actKey, keys)) == null) {
+                return null;
+            }
+        }
+
+        //The tail of the longer array is unpaired, it still has to be sorted for the pairing above to hold
+        for (++i; i < expected.size(); i++) {
+            if ((expKey = nextKey(expected, i, expKey, keys)) == null) {
+                return null;
+            }
+        }
+        for (++j; j < actual.size(); j++) {
+            if ((actKey = nextKey(actual, j, actKey, keys)) == null) {
+                return null;
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * @return key of the element at the index, null if it can not be keyed or sorts before the previous key
+     */
+    private static List<Object> nextKey(JsonArray array, int index, List<Object> prev, String[] keys) {
+        List<Object> key = KeyIndex.keyOf(array.getValue(index), keys);
+        if (key == null) {
+            return null;
+        }
+        for (Object value : key) {
+            if (rank(value) < 0) {
+                return null;
+            }
+        }
+        return prev == null || compareKeys(prev, key) <= 0 ? key : null;
+    }
+
+    static int compareKeys(List<Object> a, List<Object> b) {
+        for (int k = 0; k < a.size(); k++) {
+            int cmp = compareValues(a.get(k), b.get(k));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Values are normalized by {@link JsonValues#normalize}, numbers are Long, Double or BigInteger.
+     */
+    private static int compareValues(Object a, Object b) {
+        int cmp = Integer.compare(rank(a), rank(b));
+        if (cmp != 0 || a == null) {
+            return cmp;
+        } else if (a instanceof Long && b instanceof Long) {
+            return Long.compare((Long) a, (Long) b);
+        } else if (a instanceof Double) {
+            return Double.compare((Double) a, (Double) b);
+        } else if (a instanceof Number) {
+            return toBigInteger((Number) a).compareTo(toBigInteger((Number) b));
+        } else if (a instanceof Boolean) {
+            return Boolean.compare((Boolean) a, (Boolean) b);
+        }
+        return ((String) a).compareTo((String) b);
+    }
+
+    /**
+     * @return position of the value type in the key order, -1 if values of the type are not ordered
+     */
+    private static int rank(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Boolean) {
+            return 1;
+        } else if (value instanceof Long || value instanceof BigInteger) {
+            return 2;
+        } else if (value instanceof Double) {
+            return 3;
+        } else if (value instanceof String) {
+            return 4;
+        }
+        return -1;
+    }
+
+    private static BigInteger toBigInteger(Number n) {
+        return n instanceof BigInteger ? (BigInteger) n : BigInteger.valueOf(n.longValue());
+    }
+}
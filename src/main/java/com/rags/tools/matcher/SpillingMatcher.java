@@ -0,0 +1,184 @@
+package com.rags.tools.matcher;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compares two JSON arrays larger than the heap by partitioning them on disk, grace hash join style.
+ * Both arrays are streamed once and every element is written to the temp file of its partition, picked by the hash of
+ * its business key values, so elements carrying the same key always land in the same partition. Partition pairs are
+ * then read back one at a time and compared by the {@link JsonMatcher}, so the heap only needs to hold the largest
+ * partition pair and the merged result.
+ * <p>
+ * Elements that can not be keyed share a partition of their own and are best matched among themselves only.
+ * The merged diff reports the original element indexes, it lists the elements of the partitions that fail or hold
+ * ignored attributes and does not retain the arrays themselves.
+ *
+ * <pre>
+ * MatchingResult result = new SpillingMatcher(new JsonMatcher(), tempDir, 256)
+ *         .compare(Paths.get("positions-expected.json"), Paths.get("positions-actual.json"), spec);
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public class SpillingMatcher {
+
+    private static final char INDEX_SEPARATOR = '\t';
+
+    private final JsonMatcher matcher;
+    private final Path tempDir;
+    private final int partitions;
+
+    /**
+     * @param matcher    matcher every partition pair is compared with
+     * @param tempDir    directory the partition files are written to, they are deleted once the comparison is done
+     * @param partitions number of keyed partitions, pick it so that a partition pair fits in the heap
+     */
+    public SpillingMatcher(JsonMatcher matcher, Path tempDir, int partitions) {
+        if (partitions < 1) {
+            throw new RuntimeException("At least one partition is required.");
+        }
+        this.matcher = matcher == null ? new JsonMatcher() : matcher;
+        this.tempDir = tempDir;
+        this.partitions = partitions;
+    }
+
+    public MatchingResult compare(Path expected, Path actual, MatchSpec spec) throws IOException {
+        try (InputStream exp = Files.newInputStream(expected); InputStream act = Files.newInputStream(actual)) {
+            return compare(exp, act, spec);
+        }
+    }
+
+    /**
+     * @param expected stream holding a JSON array, it is not closed
+     * @param actual   stream holding a JSON array, it is not closed
+     * @param spec     business keys of the array elements are required
+     */
+    public MatchingResult compare(InputStream expected, InputStream actual, MatchSpec spec) throws IOException {
+        if (spec == null || !spec.hasKeys()) {
+            throw new RuntimeException("Business keys are required to partition the arrays.");
+        }
+
+        String[] keys = spec.getKeys().toArray(new String[0]);
+        Path dir = Files.createTempDirectory(tempDir, "matcher-");
+        try {
+            //The last partition holds the elements that can not be keyed
+            Path[] expParts = partition(expected, dir, "exp-", keys);
+            Path[] actParts = partition(actual, dir, "act-", keys);
+
+            Map<String, MatchingResult> diffObj = new HashMap<>();
+            boolean finalStatus = true;
+            for (int p = 0; p <= partitions; p++) {
+                finalStatus &= comparePartition(expParts[p], actParts[p], spec, diffObj);
+                Files.delete(expParts[p]);
+                Files.delete(actParts[p]);
+            }
+
+            MatchingResult.Builder result = new MatchingResult.Builder().setMatchingStatus(finalStatus ? MatchingStatus.P : MatchingStatus.F);
+            return (diffObj.isEmpty() ? result : result.setDifference(diffObj)).create();
+        } finally {
+            try (Stream<Path> leftovers = Files.list(dir)) {
+                for (Path leftover : (Iterable<Path>) leftovers::iterator) {
+                    Files.deleteIfExists(leftover);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Streams the array into partition files, one line per element: its index in the array and its JSON.
+     */
+    private Path[] partition(InputStream in, Path dir, String prefix, String[] keys) throws IOException {
+        Path[] parts = new Path[partitions + 1];
+        BufferedWriter[] writers = new BufferedWriter[partitions + 1];
+        try (JsonParser parser = Json.mapper.getFactory().createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            for (int p = 0; p <= partitions; p++) {
+                parts[p] = dir.resolve(prefix + p);
+                writers[p] = Files.newBufferedWriter(parts[p], StandardCharsets.UTF_8);
+            }
+
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new RuntimeException("Only arrays can be compared partitioned.");
+            }
+            for (int index = 0; parser.nextToken() != JsonToken.END_ARRAY; index++) {
+                Object elem = StreamingMatcher.read(parser);
+                List<Object> key = KeyIndex.keyOf(elem, keys);
+                BufferedWriter writer = writers[key == null ? partitions : Math.floorMod(key.hashCode(), partitions)];
+                writer.write(Integer.toString(index));
+                writer.write(INDEX_SEPARATOR);
+                writer.write(Json.encode(elem));
+                writer.newLine();
+            }
+        } finally {
+            for (BufferedWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Compares one partition pair in memory and adds its diff, keyed and indexed as in the original arrays.
+     *
+     * @return true if every element of the partition pair passes
+     */
+    private boolean comparePartition(Path expPart, Path actPart, MatchSpec spec, Map<String, MatchingResult> diffObj) throws IOException {
+        List<Integer> expIndexes = new ArrayList<>();
+        List<Integer> actIndexes = new ArrayList<>();
+        JsonArray expected = read(expPart, expIndexes);
+        JsonArray actual = read(actPart, actIndexes);
+        if (expected.isEmpty() && actual.isEmpty()) {
+            return true;
+        }
+
+        MatchingResult result = matcher.compare(expected, actual, spec);
+        if (result.getDiff() == null) {
+            //All passing and nothing ignored, every element passes against its pair
+            return true;
+        }
+
+        result.getDiff().forEach((index, elem) -> {
+            Integer elemIndex = elem.getElemIndex() == null || elem.getElemIndex() < 0 ? elem.getElemIndex() : expIndexes.get(elem.getElemIndex());
+            Integer matIndex = elem.getMatIndex() == null || elem.getMatIndex() < 0 ? elem.getMatIndex() : actIndexes.get(elem.getMatIndex());
+            MatchingResult.Builder remapped = elem.newBuilder().setElementIndex(elemIndex).setMatchingIndex(matIndex);
+            remapped.setAlgo(elem.getAlgo());
+            if (elem.getStatus() == MatchingStatus.NW) {
+                diffObj.put(matIndex + MatchingStatus.NW.name(), remapped.create());
+            } else {
+                diffObj.put(String.valueOf(expIndexes.get(Integer.parseInt(index))), remapped.create());
+            }
+        });
+        return result.getStatus() == MatchingStatus.P;
+    }
+
+    private static JsonArray read(Path part, List<Integer> indexes) throws IOException {
+        JsonArray elements = new JsonArray();
+        try (BufferedReader reader = Files.newBufferedReader(part, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                int separator = line.indexOf(INDEX_SEPARATOR);
+                indexes.add(Integer.parseInt(line.substring(0, separator)));
+                elements.add(JsonValues.wrap(Json.mapper.readValue(line.substring(separator + 1), Object.class)));
+            }
+        }
+        return elements;
+    }
+}
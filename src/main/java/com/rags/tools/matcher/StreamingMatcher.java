@@ -0,0 +1,217 @@
+package com.rags.tools.matcher;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.json.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares two JSON documents while reading them, without materializing either of them as a whole.
+ * Objects are compared field by field as the tokens arrive. A field is buffered only while it is missing on the other
+ * side, so documents writing their fields in the same order are compared in memory bounded by their depth.
+ * Arrays need best matching and are read into memory one at a time, then compared by the {@link JsonMatcher}.
+ * Values and nested objects compare exactly as with {@link JsonMatcher}, but a failing object does not retain its
+ * expected and actual values, only its diff.
+ *
+ * <pre>
+ * MatchingResult result = new StreamingMatcher().compare(Paths.get("expected.json"), Paths.get("actual.json"), spec);
+ * </pre>
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+public class StreamingMatcher {
+
+    private static final int NEG_INFINITY = Integer.MIN_VALUE;
+
+    private final JsonMatcher matcher;
+
+    public StreamingMatcher() {
+        this(new JsonMatcher());
+    }
+
+    /**
+     * @param matcher matcher the arrays and the buffered values are compared with
+     */
+    public StreamingMatcher(JsonMatcher matcher) {
+        this.matcher = matcher == null ? new JsonMatcher() : matcher;
+    }
+
+    public MatchingResult compare(Path expected, Path actual, MatchSpec spec) throws IOException {
+        try (InputStream exp = Files.newInputStream(expected); InputStream act = Files.newInputStream(actual)) {
+            return compare(exp, act, spec);
+        }
+    }
+
+    /**
+     * Streams are read up to the end of their first JSON value and are not closed.
+     */
+    public MatchingResult compare(InputStream expected, InputStream actual, MatchSpec spec) throws IOException {
+        if (spec == null) {
+            spec = MatchSpec.EMPTY;
+        }
+
+        try (JsonParser exp = Json.mapper.getFactory().createParser(expected);
+             JsonParser act = Json.mapper.getFactory().createParser(actual)) {
+            exp.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            act.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+            JsonToken expToken = exp.nextToken();
+            JsonToken actToken = act.nextToken();
+            if (expToken == JsonToken.START_OBJECT && actToken == JsonToken.START_OBJECT) {
+                return compareObject(exp, act, spec);
+            }
+            return matcher.compare(read(exp), read(act), spec);
+        }
+    }
+
+    /**
+     * Mirrors the object comparison of {@link JsonMatcher}, both parsers are on START_OBJECT and are left on the
+     * matching END_OBJECT.
+     */
+    private MatchingResult compareObject(JsonParser exp, JsonParser act, MatchSpec spec) throws IOException {
+        MatchingResult.Builder finalStatusObj = new MatchingResult.Builder().setMatchingStatus(MatchingStatus.P);
+        AtomicInteger matchingCount = new AtomicInteger(0);
+        boolean sparse = matcher.getOptions().isSparseResults();
+        int passCount = 0;
+        //Sparse results only need a diff once an attribute fails, the same as with the JsonMatcher
+        Map<String, MatchingResult> diffObj = sparse ? null : new HashMap<>();
+        finalStatusObj.setMatchingCount(NEG_INFINITY);
+
+        //Fields read on one side only so far, the other side may still bring them further down
+        Map<String, Object> pendingExp = new LinkedHashMap<>();
+        Map<String, Object> pendingAct = new LinkedHashMap<>();
+        Set<String> expFields = new HashSet<>();
+        Set<String> expArrays = new HashSet<>();
+
+        boolean expOpen = exp.nextToken() == JsonToken.FIELD_NAME;
+        boolean actOpen = act.nextToken() == JsonToken.FIELD_NAME;
+        while (expOpen || actOpen) {
+            String expAttr = expOpen ? exp.getCurrentName() : null;
+            String actAttr = actOpen ? act.getCurrentName() : null;
+            if (expOpen) {
+                expFields.add(expAttr);
+                if (exp.nextToken() == JsonToken.START_ARRAY) {
+                    expArrays.add(expAttr);
+                }
+            }
+            if (actOpen) {
+                act.nextToken();
+            }
+
+            if (expAttr != null && expAttr.equals(actAttr)) {
+                MatchingResult attrResult = compareAttribute(expAttr, exp, act, spec, finalStatusObj, matchingCount);
+                passCount += attrResult == null ? 1 : 0;
+                diffObj = putResult(diffObj, expAttr, attrResult);
+            } else {
+                if (expAttr != null) {
+                    Object expVal = read(exp);
+                    if (pendingAct.containsKey(expAttr)) {
+                        MatchingResult attrResult = matcher.compareAttribute(expAttr, expVal, pendingAct.remove(expAttr), spec, finalStatusObj, matchingCount, null);
+                        passCount += attrResult == null ? 1 : 0;
+                        diffObj = putResult(diffObj, expAttr, attrResult);
+                    } else {
+                        pendingExp.put(expAttr, expVal);
+                    }
+                }
+                if (actAttr != null) {
+                    Object actVal = read(act);
+                    if (pendingExp.containsKey(actAttr)) {
+                        MatchingResult attrResult = matcher.compareAttribute(actAttr, pendingExp.remove(actAttr), actVal, spec, finalStatusObj, matchingCount, null);
+                        passCount += attrResult == null ? 1 : 0;
+                        diffObj = putResult(diffObj, actAttr, attrResult);
+                    } else {
+                        pendingAct.put(actAttr, actVal);
+                    }
+                }
+            }
+
+            expOpen = expOpen && exp.nextToken() == JsonToken.FIELD_NAME;
+            actOpen = actOpen && act.nextToken() == JsonToken.FIELD_NAME;
+        }
+
+        //Failing attributes decide the status, missing and new attributes only fail an object that passes otherwise
+        if (!pendingExp.isEmpty() || !pendingAct.isEmpty()) {
+            if (finalStatusObj.isPassing()) {
+                finalStatusObj.setMatchingStatus(MatchingStatus.F);
+            }
+            //Missing attributes in expected field order, then new ones in actual field order, as the JsonMatcher has them
+            for (Map.Entry<String, Object> attr : pendingExp.entrySet()) {
+                diffObj = putResult(diffObj, attr.getKey(), new MatchingResult.Builder().setMatchingStatus(MatchingStatus.NE).setExpectedValue(attr.getValue()).create());
+            }
+            for (Map.Entry<String, Object> attr : pendingAct.entrySet()) {
+                diffObj = putResult(diffObj, attr.getKey(), new MatchingResult.Builder().setMatchingStatus(MatchingStatus.NW).setActualValue(attr.getValue()).create());
+            }
+        }
+
+        finalStatusObj.setDifference(diffObj);
+        if (!finalStatusObj.isPassing()) {
+            matcher.applyKeyStatus(finalStatusObj, expFields, expArrays::contains, spec);
+            finalStatusObj.setMatchingCount(matchingCount.get());
+        }
+        if (sparse) {
+            finalStatusObj.setPassCount(passCount);
+        }
+        return finalStatusObj.create();
+    }
+
+    /**
+     * Nested objects are compared while streaming, any other value is read and compared by the {@link JsonMatcher}.
+     *
+     * @return null for a passing attribute of sparse results
+     */
+    private MatchingResult compareAttribute(String attr, JsonParser exp, JsonParser act, MatchSpec spec,
+                                            MatchingResult.Builder finalStatusObj, AtomicInteger matchingCount) throws IOException {
+        if (exp.currentToken() != JsonToken.START_OBJECT || act.currentToken() != JsonToken.START_OBJECT || spec.isIgnoredEntirely(attr)) {
+            return matcher.compareAttribute(attr, read(exp), read(act), spec, finalStatusObj, matchingCount, null);
+        }
+
+        MatchingResult result = compareObject(exp, act, spec.getChild(attr));
+        if (result.isAllMatching() || result.isOnlyKeyMatching()) {
+            matchingCount.set(matchingCount.get() + 1);
+            if (matcher.getOptions().isSparseResults()) {
+                return null;
+            }
+        }
+
+        MatchingResult.Builder internalDiff = new MatchingResult.Builder().setMatchingStatus(MatchingStatus.P);
+        internalDiff.setAlgo(spec.isKey(attr) ? MatchingAlgo.K : MatchingAlgo.M);
+        if (!result.isAllMatching() && !result.isOnlyKeyMatching()) {
+            internalDiff.setMatchingStatus(result.getStatus()).setDifference(result.getDiff()).setPassCount(result.getPassCount());
+            finalStatusObj.setMatchingStatus(result.getStatus());
+        }
+        return internalDiff.create();
+    }
+
+    /**
+     * Sparse results of the matcher leave passing attributes out, their diff is created on the first failing one.
+     */
+    private static Map<String, MatchingResult> putResult(Map<String, MatchingResult> diffObj, String attr, MatchingResult result) {
+        if (result != null) {
+            diffObj = diffObj == null ? new HashMap<>() : diffObj;
+            diffObj.put(attr, result);
+        }
+        return diffObj;
+    }
+
+    /**
+     * Reads the value the parser is on, leaving the parser on its last token.
+     *
+     * @return null, a primitive, JsonObject or JsonArray
+     */
+    static Object read(JsonParser parser) throws IOException {
+        if (parser.currentToken() == null) {
+            return null;
+        }
+        return JsonValues.wrap(parser.readValueAs(Object.class));
+    }
+}
@@ -0,0 +1,200 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigInteger;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Canonical, Merkle style hash of a JSON value under a {@link MatchSpec}.
+ * Object fields and array elements are combined with a commutative sum so neither key order nor element order
+ * changes the hash, the same way neither changes the outcome of a comparison. Values of ignored attributes are left
+ * out, only their names count, since a missing or new attribute still fails even when it is ignored.
+ * <p>
+ * The hash has two independent 64 bit lanes. The low lane alone is a hint, callers confirm a pairing on it with a real
+ * comparison. Both lanes together are wide enough to tell values apart without confirming them.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class StructuralHash {
+
+    private static final long NULL = 0x9E3779B97F4A7C15L;
+    private static final long OBJECT = 0xC2B2AE3D27D4EB4FL;
+    private static final long ARRAY = 0x165667B19E3779F9L;
+    private static final long STRING = 1;
+    private static final long INTEGRAL = 2;
+    private static final long FLOATING = 3;
+    private static final long BOOLEAN = 4;
+    private static final long OTHER = 5;
+
+    private final long high;
+    private final long low;
+
+    private StructuralHash(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @return low lane of the hash of the value
+     */
+    static long hash(Object value, MatchSpec spec) {
+        return value instanceof JsonObject || value instanceof JsonArray ? node(value, spec, null).low : leaf(value, false);
+    }
+
+    /**
+     * @param memo hashes of the objects and arrays already hashed in the same comparison, null to hash afresh
+     * @return both lanes of the hash of the value, its objects and arrays are hashed once per memo
+     */
+    static StructuralHash of(Object value, MatchSpec spec, Memo memo) {
+        return value instanceof JsonObject || value instanceof JsonArray ? node(value, spec, memo) : new StructuralHash(leaf(value, true), leaf(value, false));
+    }
+
+    long low() {
+        return low;
+    }
+
+    private static StructuralHash node(Object value, MatchSpec spec, Memo memo) {
+        //The JsonObject and JsonArray wrappers are created on every read, the Map or List they wrap is the node
+        Object node = value instanceof JsonObject ? ((JsonObject) value).getMap() : ((JsonArray) value).getList();
+        StructuralHash hash = memo == null ? null : memo.get(node, spec);
+        if (hash == null) {
+            hash = value instanceof JsonObject ? hashObject((JsonObject) value, spec, memo) : hashArray((JsonArray) value, spec, memo);
+            if (memo != null) {
+                memo.put(node, spec, hash);
+            }
+        }
+        return hash;
+    }
+
+    private static StructuralHash hashObject(JsonObject obj, MatchSpec spec, Memo memo) {
+        long high = OBJECT + obj.size();
+        long low = high;
+        for (String attr : obj.fieldNames()) {
+            long valueHigh = 0;
+            long valueLow = 0;
+            if (!spec.isIgnoredEntirely(attr)) {
+                Object value = obj.getValue(attr);
+                if (value instanceof JsonObject || value instanceof JsonArray) {
+                    StructuralHash nested = node(value, spec.getChild(attr), memo);
+                    valueHigh = nested.high;
+                    valueLow = nested.low;
+                } else if (!spec.isIgnored(attr)) {
+                    valueHigh = leaf(value, true);
+                    valueLow = leaf(value, false);
+                }
+            }
+            high += stafford(string(attr, true) * 31 + valueHigh);
+            low += mix(string(attr, false) * 31 + valueLow);
+        }
+        return new StructuralHash(stafford(high), mix(low));
+    }
+
+    private static StructuralHash hashArray(JsonArray array, MatchSpec spec, Memo memo) {
+        long high = ARRAY + array.size();
+        long low = high;
+        for (int i = 0; i < array.size(); i++) {
+            Object value = array.getValue(i);
+            if (value instanceof JsonObject || value instanceof JsonArray) {
+                StructuralHash elem = node(value, spec, memo);
+                high += stafford(elem.high);
+                low += mix(elem.low);
+            } else {
+                high += stafford(leaf(value, true));
+                low += mix(leaf(value, false));
+            }
+        }
+        return new StructuralHash(stafford(high), mix(low));
+    }
+
+    /**
+     * Values equal under {@link JsonValues#primitiveEquals} hash the same, the lanes read the contents of strings
+     * rather than their 32 bit hash code.
+     */
+    private static long leaf(Object value, boolean high) {
+        long h;
+        if (value == null) {
+            return NULL;
+        } else if (value instanceof String) {
+            h = STRING * 31 + string((String) value, high);
+        } else if (value instanceof Boolean) {
+            h = BOOLEAN * 31 + ((Boolean) value ? 1 : 2);
+        } else if (JsonValues.isJsonNumber(value)) {
+            Object n = JsonValues.normalize(value);
+            if (n instanceof Long) {
+                h = INTEGRAL * 31 + (Long) n;
+            } else if (n instanceof BigInteger) {
+                h = INTEGRAL * 31 + string(n.toString(), high);
+            } else {
+                h = FLOATING * 31 + Double.doubleToLongBits((Double) n);
+            }
+        } else {
+            h = OTHER * 31 + (high ? string(value.toString(), true) : value.hashCode());
+        }
+        return high ? stafford(h) : mix(h);
+    }
+
+    /**
+     * FNV-1a for the low lane, a golden ratio multiply for the high lane, both over the 16 bit chars.
+     */
+    private static long string(String s, boolean high) {
+        long h = high ? s.length() : 0xCBF29CE484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = high ? (h + s.charAt(i)) * 0x9E3779B97F4A7C15L : (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * 64 bit finalizer of MurmurHash3, spreads the bits so that sums of hashes do not cancel out.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Variant 13 of Stafford's finalizer, independent of {@link #mix} for the high lane.
+     */
+    private static long stafford(long h) {
+        h = (h ^ h >>> 30) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ h >>> 27) * 0x94D049BB133111EBL;
+        return h ^ h >>> 31;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StructuralHash)) {
+            return false;
+        }
+        StructuralHash hash = (StructuralHash) o;
+        return high == hash.high && low == hash.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high * 31 + low);
+    }
+
+    /**
+     * Hashes of the objects and arrays of one comparison, so nested levels reuse what hashing the top level computed.
+     */
+    static final class Memo {
+        private final Map<Object, Object[]> hashes = new IdentityHashMap<>();
+
+        private synchronized StructuralHash get(Object node, MatchSpec spec) {
+            Object[] entry = hashes.get(node);
+            return entry != null && entry[0] == spec ? (StructuralHash) entry[1] : null;
+        }
+
+        private synchronized void put(Object node, MatchSpec spec, StructuralHash hash) {
+            hashes.put(node, new Object[]{spec, hash});
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.rags.tools.matcher;
+
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Blocking OutputStream over a Vert.x WriteStream, for a worker thread writing to e.g. an HTTP response.
+ * Bytes are sent in chunks on the context owning the stream. At most a few chunks are on their way at a time and none
+ * is sent while the write queue of the stream is full, so the writer blocks until the stream drains and memory stays
+ * bounded by the chunks whatever the size of the output. Ending the stream is left to its owner.
+ *
+ * @author Raghav Chandra (raghav.yo@gmail.com)
+ */
+final class WriteStreamOutputStream extends OutputStream {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final int CHUNKS_IN_FLIGHT = 4;
+
+    private final Context context;
+    private final WriteStream<Buffer> stream;
+    private final Semaphore permits = new Semaphore(CHUNKS_IN_FLIGHT);
+    private volatile IOException failure;
+
+    //Only touched on the context, permits of the chunks sent while the write queue was full
+    private int withheld;
+
+    //Only touched by the writing thread
+    private Buffer chunk = Buffer.buffer(CHUNK_SIZE);
+
+    /**
+     * @param context context the stream is written on
+     */
+    WriteStreamOutputStream(Context context, WriteStream<Buffer> stream) {
+        this.context = context;
+        this.stream = stream;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        chunk.appendByte((byte) b);
+        if (chunk.length() >= CHUNK_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        chunk.appendBytes(b, off, len);
+        if (chunk.length() >= CHUNK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends what is written so far, waiting while the stream is full.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (chunk.length() == 0) {
+            return;
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the stream to drain.");
+        }
+        if (failure != null) {
+            permits.release();
+            throw failure;
+        }
+
+        Buffer sent = chunk;
+        chunk = Buffer.buffer(CHUNK_SIZE);
+        context.runOnContext(v -> {
+            try {
+                stream.write(sent);
+            } catch (RuntimeException e) {
+                abort(new IOException("Could not write to the stream.", e));
+                return;
+            }
+            if (stream.writeQueueFull()) {
+                //The stream calls its drain handler once, it gives back the permits of every chunk sent since it filled up
+                withheld++;
+                stream.drainHandler(drained -> {
+                    permits.release(withheld);
+                    withheld = 0;
+                });
+            } else {
+                permits.release();
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Fails the writes still to come, a writer waiting for the stream to drain included, e.g. once the connection
+     * closed.
+     */
+    void abort(IOException cause) {
+        failure = cause;
+        permits.release(CHUNKS_IN_FLIGHT);
+    }
+}
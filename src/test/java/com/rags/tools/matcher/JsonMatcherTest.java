@@ -1,18 +1,66 @@
 package com.rags.tools.matcher;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Raghav Chandra (raghav.yo@gmail.com)
@@ -603,4 +651,1288 @@ public class JsonMatcherTest {
         assertEquals(MatchingStatus.P,diff.get("1").getStatus());
         assertEquals(MatchingStatus.NW,diff.get("2NW").getStatus());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testJsonTreeInputsAreReadInPlace() {
+        JsonObject expected = new JsonObject()
+                .put("id", 10110)
+                .put("tags", new JsonArray().add(new JsonObject().put("name", "Raghav")));
+        Map<String, Object> actual = new HashMap<>();
+        actual.put("id", 10110L);
+        actual.put("tags", List.of(Map.of("name", "Chandra")));
+
+        MatchingResult result = matcher.compare(expected, actual);
+        assertEquals(MatchingStatus.F, result.getStatus());
+        assertSame(expected, result.getExp());
+        assertSame(actual, ((JsonObject) result.getAct()).getMap());
+        assertEquals(MatchingStatus.P, result.getDiff().get("id").getStatus());
+        assertEquals(MatchingStatus.F, result.getDiff().get("tags").getStatus());
+    }
+
+    @Test
+    public void testCompiledSpecIsReusable() {
+        JsonObject ignored = new JsonObject().put("name", new JsonObject().put("second", true));
+        MatchSpec spec = MatchSpec.compile(ignored.getMap(), null);
+
+        JsonObject expected = new JsonObject()
+                .put("name", new JsonArray().add(new JsonObject().put("second", "Chandra")));
+        JsonObject actual = new JsonObject()
+                .put("name", new JsonArray().add(new JsonObject().put("second", "BlahBlah")));
+
+        assertEquals(MatchingStatus.P, matcher.compare(expected, actual, spec).getStatus());
+        assertEquals(MatchingStatus.P, matcher.compare(actual, expected, spec).getStatus());
+        assertEquals(MatchingStatus.F, matcher.compare(expected, actual, MatchSpec.EMPTY).getStatus());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSpecNotInCorrectForm() {
+        MatchSpec.compile(new JsonObject().put("name", "second").getMap());
+    }
+
+    @Test
+    public void testCompositeBusinessKey() {
+        JsonArray expected = new JsonArray()
+                .add(new JsonObject().put("book", "FX").put("tradeId", 1).put("qty", 100))
+                .add(new JsonObject().put("book", "FX").put("tradeId", 2).put("qty", 200))
+                .add(new JsonObject().put("book", "RATES").put("tradeId", 1).put("qty", 300))
+                .add(new JsonObject().put("book", "RATES").put("tradeId", 9).put("qty", 400));
+
+        JsonArray actual = new JsonArray()
+                .add(new JsonObject().put("book", "RATES").put("tradeId", 1L).put("qty", 301))
+                .add(new JsonObject().put("book", "FX").put("tradeId", 2).put("qty", 200))
+                .add(new JsonObject().put("book", "FX").put("tradeId", 1).put("qty", 100))
+                .add(new JsonObject().put("book", "CREDIT").put("tradeId", 1).put("qty", 400));
+
+        JsonObject key = new JsonObject().put("book", true).put("tradeId", true);
+        MatchingResult result = matcher.compare(expected, actual, MatchSpec.compile(null, key.getMap()));
+
+        assertEquals(MatchingStatus.F, result.getStatus());
+        Map<String, MatchingResult> diff = result.getDiff();
+        assertEquals(MatchingStatus.P, diff.get("0").getStatus());
+        assertEquals(MatchingStatus.P, diff.get("1").getStatus());
+        assertEquals(MatchingStatus.PK, diff.get("2").getStatus());
+        assertEquals((Integer) 0, diff.get("2").getMatIndex());
+        assertEquals(MatchingStatus.NE, diff.get("3").getStatus());
+        assertEquals(MatchingStatus.NW, diff.get("3NW").getStatus());
+    }
+
+    @Test
+    public void testIdenticalElementsArePairedIgnoringOrder() {
+        JsonArray expected = new JsonArray()
+                .add(new JsonObject().put("name", "Raghav").put("sec", "Blah").put("ts", 1))
+                .add(new JsonObject().put("name", "Chandra").put("sec", "BB").put("ts", 2))
+                .add(new JsonObject().put("name", "Chandra").put("sec", "BB").put("ts", 3));
+
+        JsonArray actual = new JsonArray()
+                .add(new JsonObject().put("sec", "BB").put("name", "Chandra").put("ts", 4))
+                .add(new JsonObject().put("ts", 5).put("sec", "Blah").put("name", "Raghav"));
+
+        MatchingResult result = matcher.compare(expected, actual, new JsonObject().put("ts", true).getMap());
+
+        assertEquals(MatchingStatus.F, result.getStatus());
+        Map<String, MatchingResult> diff = result.getDiff();
+        assertEquals(MatchingStatus.P, diff.get("0").getStatus());
+        assertEquals((Integer) 1, diff.get("0").getMatIndex());
+        assertEquals(MatchingStatus.IGN, diff.get("0").getDiff().get("ts").getStatus());
+        assertEquals(MatchingStatus.P, diff.get("1").getStatus());
+        assertEquals((Integer) 0, diff.get("1").getMatIndex());
+        assertEquals(MatchingStatus.NE, diff.get("2").getStatus());
+    }
+
+    @Test
+    public void testOptimalAssignmentPrefersMostMatchingAttributes() {
+        List<JsonObject> exp = List.of(new JsonObject().put("first", "Raghav").put("second", "Chandra").put("third", "Nagative"),
+                new JsonObject().put("first", "Raghav").put("second", "Wrong"));
+        List<JsonObject> act = List.of(new JsonObject().put("first", "Raghav").put("second", "Blah").put("add", "India"),
+                new JsonObject().put("first", "Raghav").put("second", "Chandra"));
+
+        Matcher optimal = new JsonMatcher(new MatchOptions.Builder().setAssignmentMode(AssignmentMode.OPTIMAL).create());
+        MatchingResult result = optimal.compare(exp, act);
+        assertEquals(MatchingStatus.F, result.getStatus());
+        assertEquals((Integer) 1, result.getDiff().get("0").getMatIndex());
+        assertEquals((Integer) 0, result.getDiff().get("1").getMatIndex());
+        assertEquals(MatchingStatus.P, result.getDiff().get("0").getDiff().get("second").getStatus());
+    }
+
+    @Test
+    public void testParallelArrayComparisonIsDeterministic() {
+        JsonArray expected = new JsonArray();
+        JsonArray actual = new JsonArray();
+        for (int i = 0; i < 200; i++) {
+            expected.add(new JsonObject().put("id", i).put("name", "name" + i % 7).put("nested", new JsonArray().add(i % 3).add(i % 5)));
+            actual.add(new JsonObject().put("id", (i * 7) % 200).put("name", "name" + i % 5).put("nested", new JsonArray().add(i % 5).add(i % 3)));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Matcher parallel = new JsonMatcher(new MatchOptions.Builder().setParallelPool(pool).setParallelThreshold(1).create());
+            MatchingResult sequentialResult = matcher.compare(expected, actual);
+            MatchingResult parallelResult = parallel.compare(expected, actual);
+
+            assertEquals(sequentialResult.getStatus(), parallelResult.getStatus());
+            assertEquals(sequentialResult.getDiff().keySet(), parallelResult.getDiff().keySet());
+            sequentialResult.getDiff().forEach((index, elem) -> {
+                assertEquals(elem.getStatus(), parallelResult.getDiff().get(index).getStatus());
+                assertEquals(elem.getMatIndex(), parallelResult.getDiff().get(index).getMatIndex());
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamingComparisonMatchesTreeComparison() throws IOException {
+        JsonObject expected = new JsonObject().put("name", "Raghav").put("age", 5)
+                .put("add", new JsonObject().put("country", "India").put("city", "Prayagraj"))
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 10)).add(new JsonObject().put("id", 2).put("qty", 20)));
+        JsonObject actual = new JsonObject().put("country", "India")
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 2).put("qty", 21)).add(new JsonObject().put("id", 1).put("qty", 10)))
+                .put("add", new JsonObject().put("country", "USA").put("city", "Prayagraj"))
+                .put("name", "Raghav");
+
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("trades", new JsonObject().put("id", true)).getMap());
+        MatchingResult treeResult = matcher.compare(expected, actual, spec);
+        MatchingResult streamResult = new StreamingMatcher().compare(new ByteArrayInputStream(expected.toBuffer().getBytes()),
+                new ByteArrayInputStream(actual.toBuffer().getBytes()), spec);
+
+        assertEquals(treeResult.getStatus(), streamResult.getStatus());
+        assertEquals(treeResult.getCount(), streamResult.getCount());
+        assertEquals(treeResult.getDiff().keySet(), streamResult.getDiff().keySet());
+        treeResult.getDiff().forEach((attr, res) -> assertEquals(res.getStatus(), streamResult.getDiff().get(attr).getStatus()));
+        assertEquals(MatchingStatus.F, streamResult.getDiff().get("add").getDiff().get("country").getStatus());
+        assertEquals(MatchingStatus.PK, streamResult.getDiff().get("trades").getDiff().get("1").getStatus());
+        assertNull(streamResult.getExp());
+    }
+
+    @Test
+    public void testSparseStreamingComparisonMatchesSparseTreeComparison() throws IOException {
+        JsonObject expected = new JsonObject().put("name", "Raghav")
+                .put("add", new JsonObject().put("country", "India").put("city", "Prayagraj").put("pin", 211001))
+                .put("meta", new JsonObject().put("source", "A").put("version", 2)).put("age", 5)
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 10)).add(new JsonObject().put("id", 2).put("qty", 20)));
+        JsonObject actual = new JsonObject().put("name", "Raghav")
+                .put("add", new JsonObject().put("country", "USA").put("city", "Prayagraj").put("pin", 211001))
+                .put("meta", new JsonObject().put("version", 2).put("source", "A"))
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 2).put("qty", 21)).add(new JsonObject().put("id", 1).put("qty", 10)))
+                .put("country", "India");
+
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("trades", new JsonObject().put("id", true)).getMap());
+        JsonMatcher sparse = new JsonMatcher(new MatchOptions.Builder().setSparseResults(true).create());
+        MatchingResult treeResult = sparse.compare(expected, actual, spec);
+        MatchingResult streamResult = new StreamingMatcher(sparse).compare(new ByteArrayInputStream(expected.toBuffer().getBytes()),
+                new ByteArrayInputStream(actual.toBuffer().getBytes()), spec);
+
+        //Streamed objects do not retain their values, the rest of the results is the same
+        assertEquals(withoutObjectValues(new JsonObject(Json.encode(treeResult))), new JsonObject(Json.encode(streamResult)));
+        assertNull(streamResult.getDiff().get("meta"));
+        assertEquals(Integer.valueOf(2), streamResult.getPassCount());
+        assertEquals(Integer.valueOf(2), streamResult.getDiff().get("add").getPassCount());
+    }
+
+    private static JsonObject withoutObjectValues(JsonObject result) {
+        result.remove("exp");
+        result.remove("act");
+        JsonObject diff = result.getJsonObject("diff");
+        if (diff != null) {
+            diff.fieldNames().stream().map(diff::getJsonObject).filter(attr -> attr.getValue("exp") instanceof JsonObject).forEach(JsonMatcherTest::withoutObjectValues);
+        }
+        return result;
+    }
+
+    @Test
+    public void testSortedByKeyArraysAreMergePaired() {
+        JsonArray expected = new JsonArray()
+                .add(new JsonObject().put("id", 1).put("qty", 10))
+                .add(new JsonObject().put("id", 2).put("qty", 20))
+                .add(new JsonObject().put("id", 4).put("qty", 40));
+        JsonArray actual = new JsonArray()
+                .add(new JsonObject().put("id", 1L).put("qty", 10))
+                .add(new JsonObject().put("id", 3).put("qty", 30))
+                .add(new JsonObject().put("id", 4).put("qty", 41));
+
+        JsonObject key = new JsonObject().put("trades", new JsonObject().put("id", true));
+        JsonObject sorted = new JsonObject().put("trades", true);
+        MatchSpec spec = MatchSpec.compile(null, key.getMap(), sorted.getMap());
+        MatchingResult result = matcher.compare(new JsonObject().put("trades", expected), new JsonObject().put("trades", actual), spec);
+
+        Map<String, MatchingResult> diff = result.getDiff().get("trades").getDiff();
+        assertEquals(MatchingStatus.P, diff.get("0").getStatus());
+        assertEquals(MatchingStatus.NE, diff.get("1").getStatus());
+        assertEquals(MatchingStatus.PK, diff.get("2").getStatus());
+        assertEquals((Integer) 2, diff.get("2").getMatIndex());
+        assertEquals(MatchingStatus.NW, diff.get("1NW").getStatus());
+
+        //Not sorted after all, falls back to best matching
+        MatchingResult unsorted = matcher.compare(new JsonArray().add(expected.getValue(2)).add(expected.getValue(0)),
+                new JsonArray().add(actual.getValue(0)).add(actual.getValue(2)), spec.getChild("trades"));
+        assertEquals((Integer) 1, unsorted.getDiff().get("0").getMatIndex());
+        assertEquals((Integer) 0, unsorted.getDiff().get("1").getMatIndex());
+    }
+
+    @Test
+    public void testSortedByKeyKeepsIntegralAndFloatingPointKeysApart() {
+        JsonArray expected = new JsonArray("[{\"id\":1,\"qty\":1},{\"id\":2,\"qty\":2}]");
+        JsonArray actual = new JsonArray("[{\"id\":1.0,\"qty\":1},{\"id\":2,\"qty\":2},{\"id\":3,\"qty\":3}]");
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("id", true).getMap());
+
+        MatchingResult merged = matcher.compare(expected, actual, spec.asSortedByKey());
+        MatchingResult matched = matcher.compare(expected, actual, spec);
+
+        assertEquals(matched.getStatus(), merged.getStatus());
+        assertEquals(matched.getDiff().keySet(), merged.getDiff().keySet());
+        matched.getDiff().forEach((index, elem) -> {
+            assertEquals(elem.getStatus(), merged.getDiff().get(index).getStatus());
+            assertEquals(elem.getMatIndex(), merged.getDiff().get(index).getMatIndex());
+        });
+        assertEquals(MatchingStatus.NE, merged.getDiff().get("0").getStatus());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSortedByKeyNeedsBusinessKeys() {
+        MatchSpec.compile(null, null, new JsonObject().put("trades", true).getMap());
+    }
+
+    @Test
+    public void testSpilledArrayComparisonMatchesInMemory() throws IOException {
+        JsonArray expected = new JsonArray();
+        JsonArray actual = new JsonArray();
+        for (int i = 0; i < 50; i++) {
+            expected.add(new JsonObject().put("id", i).put("qty", i * 10));
+            actual.add(new JsonObject().put("id", 49 - i + 1).put("qty", (49 - i + 1) * 10 + (i % 10 == 0 ? 1 : 0)));
+        }
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("id", true).getMap());
+
+        Path tempDir = Files.createTempDirectory("matcher-test");
+        try {
+            MatchingResult spilled = new SpillingMatcher(new JsonMatcher(), tempDir, 4).compare(new ByteArrayInputStream(expected.toBuffer().getBytes()),
+                    new ByteArrayInputStream(actual.toBuffer().getBytes()), spec);
+            MatchingResult inMemory = matcher.compare(expected, actual, spec);
+
+            assertEquals(inMemory.getStatus(), spilled.getStatus());
+            spilled.getDiff().forEach((index, elem) -> {
+                assertEquals(inMemory.getDiff().get(index).getStatus(), elem.getStatus());
+                assertEquals(inMemory.getDiff().get(index).getMatIndex(), elem.getMatIndex());
+            });
+            assertEquals(MatchingStatus.NE, spilled.getDiff().get("0").getStatus());
+            assertEquals(MatchingStatus.NW, spilled.getDiff().get("0NW").getStatus());
+            assertEquals(0, Files.list(tempDir).count());
+        } finally {
+            Files.delete(tempDir);
+        }
+    }
+
+    @Test
+    public void testCompactResultsRecordPointersInsteadOfSubtrees() {
+        JsonObject expected = new JsonObject().put("name", "Raghav")
+                .put("add", new JsonObject().put("country", "India").put("a/b", new JsonObject().put("zip", 1)))
+                .put("tags", new JsonArray().add(new JsonObject().put("id", 1)).add(new JsonObject().put("id", 2).put("v", "x")));
+        JsonObject actual = new JsonObject().put("name", "Raghav")
+                .put("add", new JsonObject().put("country", "USA").put("a/b", new JsonObject().put("zip", 2)))
+                .put("tags", new JsonArray().add(new JsonObject().put("id", 2).put("v", "y")).add(new JsonObject().put("id", 1)));
+
+        Matcher compact = new JsonMatcher(new MatchOptions.Builder().setCompactResults(true).create());
+        MatchingResult result = compact.compare(expected, actual);
+
+        assertEquals(MatchingStatus.F, result.getStatus());
+        assertNull(result.getExp());
+        assertEquals("", result.getExpPath());
+        assertSame(expected, result.resolveExp(expected));
+
+        MatchingResult add = result.getDiff().get("add");
+        assertNull(add.getExp());
+        assertEquals("/add", add.getExpPath());
+        assertEquals("India", add.getDiff().get("country").getExp());
+        assertEquals("/add/a~1b", add.getDiff().get("a/b").getActPath());
+        assertEquals(new JsonObject().put("zip", 2), add.getDiff().get("a/b").resolveAct(actual));
+
+        MatchingResult tag = result.getDiff().get("tags").getDiff().get("1");
+        assertEquals("/tags/1", tag.getExpPath());
+        assertEquals("/tags/0", tag.getActPath());
+        assertEquals("y", tag.getDiff().get("v").getAct());
+        assertEquals(actual.getJsonArray("tags").getValue(0), tag.resolveAct(actual));
+    }
+
+    @Test
+    public void testSparseResultsLeavePassingEntriesOut() {
+        JsonObject expected = new JsonObject().put("id", 1).put("name", "Raghav").put("age", 5).put("ts", 1)
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 1)).add(new JsonObject().put("id", 2).put("qty", 2)));
+        JsonObject actual = new JsonObject().put("id", 1).put("name", "Raghav").put("age", 6).put("ts", 2)
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 1)).add(new JsonObject().put("id", 2).put("qty", 3)));
+
+        Matcher sparse = new JsonMatcher(new MatchOptions.Builder().setSparseResults(true).create());
+        MatchingResult result = sparse.compare(expected, actual, MatchSpec.compile(new JsonObject().put("ts", true).getMap(), new JsonObject().put("id", true).getMap()));
+
+        assertEquals(MatchingStatus.PK, result.getStatus());
+        assertEquals((Integer) 2, result.getPassCount());
+        assertEquals(3, result.getDiff().size());
+        assertEquals(MatchingStatus.F, result.getDiff().get("age").getStatus());
+        assertEquals(MatchingStatus.IGN, result.getDiff().get("ts").getStatus());
+
+        MatchingResult trades = result.getDiff().get("trades");
+        assertEquals((Integer) 1, trades.getPassCount());
+        assertNull(trades.getDiff().get("0"));
+        assertEquals(MatchingStatus.F, trades.getDiff().get("1").getStatus());
+
+        assertNull(sparse.compare(expected, expected).getDiff());
+    }
+
+    @Test
+    public void testSparseResultsBuildNothingForPassingAttributes() {
+        JsonMatcher sparse = new JsonMatcher(new MatchOptions.Builder().setSparseResults(true).create());
+        JsonObject expected = new JsonObject().put("id", 1);
+        JsonObject actual = new JsonObject().put("id", 2);
+        MatchStats one = new MatchStats();
+        sparse.compareWithStats(expected, actual, MatchSpec.EMPTY, one);
+
+        for (int i = 0; i < 50; i++) {
+            expected.put("attr" + i, i).put("obj" + i, new JsonObject().put("v", i));
+            actual.put("attr" + i, i).put("obj" + i, new JsonObject().put("v", i));
+        }
+        MatchStats many = new MatchStats();
+        MatchingResult result = sparse.compareWithStats(expected, actual, MatchSpec.EMPTY, many);
+
+        assertEquals(Set.of("id"), result.getDiff().keySet());
+        assertEquals((Integer) 100, result.getPassCount());
+        //Only the nested objects themselves, none of the passing attributes
+        assertEquals(one.getResultCount() + 50, many.getResultCount());
+    }
+
+    @Test
+    public void testMatchesAgreesWithCompare() {
+        JsonObject expected = new JsonObject().put("id", 1).put("ts", 1)
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 10)).add(new JsonObject().put("id", 2).put("qty", 20)));
+        JsonObject reordered = new JsonObject().put("ts", 2).put("id", 1L)
+                .put("trades", new JsonArray().add(new JsonObject().put("qty", 20).put("id", 2)).add(new JsonObject().put("qty", 10).put("id", 1)));
+        JsonObject changed = reordered.copy();
+        changed.getJsonArray("trades").getJsonObject(0).put("qty", 21);
+        JsonObject extra = reordered.copy().put("new", true);
+
+        MatchSpec spec = MatchSpec.compile(new JsonObject().put("ts", true).getMap(), new JsonObject().put("trades", new JsonObject().put("id", true)).getMap());
+        for (JsonObject actual : List.of(expected, reordered, changed, extra)) {
+            assertEquals(matcher.compare(expected, actual, spec).getStatus() == MatchingStatus.P, matcher.matches(expected, actual, spec));
+        }
+        assertTrue(matcher.matches(expected, reordered, spec));
+        assertFalse(matcher.matches(expected, changed, spec));
+        assertFalse(matcher.matches(expected, extra, spec));
+        assertFalse(matcher.matches(new JsonArray().add(1).add(1), new JsonArray().add(1), MatchSpec.EMPTY));
+        assertTrue(matcher.matches(null, null, null));
+    }
+
+    @Test
+    public void testBudgetTruncatesComparison() {
+        JsonObject expected = new JsonObject().put("id", 1).put("name", "Raghav")
+                .put("address", new JsonObject().put("city", "Pune").put("geo", new JsonObject().put("lat", 18)));
+        JsonObject actual = new JsonObject().put("id", 1).put("name", "Rags")
+                .put("address", new JsonObject().put("city", "Pune").put("geo", new JsonObject().put("lat", 19)));
+
+        JsonMatcher jsonMatcher = new JsonMatcher();
+        MatchingResult unlimited = jsonMatcher.compare(expected, actual, MatchSpec.EMPTY, new CompareBudget.Builder().create());
+        assertNull(unlimited.getTruncated());
+        assertEquals(MatchingStatus.F, unlimited.getDiff().get("address").getDiff().get("geo").getStatus());
+
+        MatchingResult shallow = jsonMatcher.compare(expected, actual, MatchSpec.EMPTY, new CompareBudget.Builder().setMaxDepth(1).create());
+        assertEquals(BudgetLimit.MAX_DEPTH, shallow.getTruncated());
+        assertEquals(MatchingStatus.F, shallow.getDiff().get("name").getStatus());
+        assertEquals(MatchingStatus.P, shallow.getDiff().get("address").getDiff().get("city").getStatus());
+        assertEquals(MatchingStatus.TR, shallow.getDiff().get("address").getDiff().get("geo").getStatus());
+
+        JsonArray expArray = new JsonArray();
+        JsonArray actArray = new JsonArray();
+        for (int i = 0; i < 50; i++) {
+            expArray.add(new JsonObject().put("id", i).put("qty", i));
+            actArray.add(new JsonObject().put("id", i).put("qty", i + 1));
+        }
+        MatchingResult fewDiffs = jsonMatcher.compare(expArray, actArray, MatchSpec.compile(null, new JsonObject().put("id", true).getMap()),
+                new CompareBudget.Builder().setMaxDiffs(3).create());
+        assertEquals(BudgetLimit.MAX_DIFFS, fewDiffs.getTruncated());
+        assertEquals(MatchingStatus.F, fewDiffs.getStatus());
+        assertEquals(47, fewDiffs.getDiff().values().stream().filter(elem -> elem.getStatus() == MatchingStatus.TR).count());
+
+        MatchingResult cancelled = jsonMatcher.compare(expected, actual, MatchSpec.EMPTY, new CompareBudget.Builder().setCancellation(() -> true).create());
+        assertEquals(BudgetLimit.CANCELLED, cancelled.getTruncated());
+        assertEquals(MatchingStatus.TR, cancelled.getStatus());
+    }
+
+    @Test
+    public void testListenerReportsDifferencesInDocumentOrder() {
+        JsonObject expected = new JsonObject().put("id", 1).put("name", "Raghav")
+                .put("address", new JsonObject().put("city", "Pune"))
+                .put("tags", new JsonArray().add("a").add("b"));
+        JsonObject actual = new JsonObject().put("id", 1).put("name", "Rags")
+                .put("address", new JsonObject().put("city", "Delhi"))
+                .put("tags", new JsonArray().add("a").add("c"));
+
+        List<String> events = new ArrayList<>();
+        MatchingStatus status = new JsonMatcher().report(expected, actual, MatchSpec.EMPTY, new DiffListener() {
+            @Override
+            public void onDiff(String path, MatchingStatus status, Object exp, Object act) {
+                events.add(path + " " + status + " " + exp + " " + act);
+            }
+
+            @Override
+            public void enterObject(String path) {
+                events.add("{ " + path);
+            }
+
+            @Override
+            public void exitObject(String path, MatchingStatus status) {
+                events.add("} " + path + " " + status);
+            }
+
+            @Override
+            public void enterArray(String path) {
+                events.add("[ " + path);
+            }
+
+            @Override
+            public void exitArray(String path, MatchingStatus status) {
+                events.add("] " + path + " " + status);
+            }
+        });
+
+        assertEquals(matcher.compare(expected, actual).getStatus(), status);
+        assertEquals(List.of("{ ", "/name F Raghav Rags", "{ /address", "/address/city F Pune Delhi", "} /address F",
+                "[ /tags", "/tags/1 F b c", "] /tags F", "}  F"), events);
+
+        List<String> leaves = new ArrayList<>();
+        assertEquals(MatchingStatus.F, new JsonMatcher().report(1, 2, null, (path, st, exp, act) -> leaves.add(path + " " + st)));
+        assertEquals(List.of(" F"), leaves);
+    }
+
+    @Test
+    public void testDiffWriterWritesJsonPatchAndNdjson() throws IOException {
+        JsonObject expected = new JsonObject().put("id", 1).put("name", "Raghav").put("old", true)
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 1)).add(new JsonObject().put("id", 2)).add(new JsonObject().put("id", 3)));
+        JsonObject actual = new JsonObject().put("id", 1).put("name", "Rags").put("new", 5)
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 2)).add(new JsonObject().put("id", 4)));
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("trades", new JsonObject().put("id", true)).getMap());
+
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        try (DiffWriter writer = new DiffWriter(patch, DiffWriter.Format.JSON_PATCH)) {
+            assertEquals(MatchingStatus.F, new JsonMatcher().report(expected, actual, spec, writer));
+        }
+        //Expected document order, new attributes last
+        assertEquals(new JsonArray()
+                .add(new JsonObject().put("op", "replace").put("path", "/name").put("value", "Rags"))
+                .add(new JsonObject().put("op", "remove").put("path", "/old"))
+                .add(new JsonObject().put("op", "add").put("path", "/trades/-").put("value", new JsonObject().put("id", 4)))
+                .add(new JsonObject().put("op", "remove").put("path", "/trades/2"))
+                .add(new JsonObject().put("op", "remove").put("path", "/trades/0"))
+                .add(new JsonObject().put("op", "add").put("path", "/new").put("value", 5)), new JsonArray(patch.toString()));
+
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        try (DiffWriter writer = new DiffWriter(lines, DiffWriter.Format.NDJSON)) {
+            new JsonMatcher().report(expected, actual, spec, writer);
+        }
+        String[] diffs = lines.toString().split("\n");
+        assertEquals(List.of("/name", "/old", "/trades/0", "/trades/2", "/trades/1", "/new"),
+                Arrays.stream(diffs).map(line -> new JsonObject(line).getString("path")).collect(Collectors.toList()));
+        assertEquals(new JsonObject().put("path", "/name").put("status", "F").put("exp", "Raghav").put("act", "Rags"), new JsonObject(diffs[0]));
+    }
+
+    @Test
+    public void testDiffWriterAppendsToNestedArraysOfReorderedElements() throws IOException {
+        JsonObject expected = new JsonObject("{\"list\":[{\"id\":1,\"tags\":[\"x\"]},{\"id\":2,\"tags\":[\"y\"]}]}");
+        JsonObject actual = new JsonObject("{\"list\":[{\"id\":2,\"tags\":[\"y\"]},{\"id\":1,\"tags\":[\"x\",\"z\"]}]}");
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("list", new JsonObject().put("id", true)).getMap());
+
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        try (DiffWriter writer = new DiffWriter(patch, DiffWriter.Format.JSON_PATCH)) {
+            assertEquals(MatchingStatus.F, new JsonMatcher().report(expected, actual, spec, writer));
+        }
+        assertEquals(new JsonArray().add(new JsonObject().put("op", "add").put("path", "/list/0/tags/-").put("value", "z")),
+                new JsonArray(patch.toString()));
+    }
+
+    @Test
+    public void testBatchComparisonKeepsOrderAndCountsOutcomes() throws InterruptedException {
+        List<ComparePair> pairs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            pairs.add(ComparePair.of(new JsonObject().put("id", i).put("qty", i), new JsonObject().put("id", i).put("qty", i % 10 == 1 ? -i : i)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BatchMatcher batchMatcher = new BatchMatcher(matcher, executor, 8);
+            List<Long> order = new ArrayList<>();
+            List<MatchingResult> results = new ArrayList<>();
+            BatchStats stats = batchMatcher.compareAll(pairs, MatchSpec.EMPTY, true, (index, result) -> {
+                order.add(index);
+                results.add(result);
+            });
+            assertEquals(200, order.size());
+            for (int i = 0; i < order.size(); i++) {
+                assertEquals((long) i, (long) order.get(i));
+                assertEquals(matcher.compare(pairs.get(i).getExpected(), pairs.get(i).getActual()).getStatus(), results.get(i).getStatus());
+            }
+            assertEquals(200, stats.getCount());
+            assertEquals(20, stats.getFailCount());
+            assertEquals(10, stats.getSlowest().size());
+
+            Set<Long> unordered = ConcurrentHashMap.newKeySet();
+            assertEquals(180, batchMatcher.compareAll(pairs, MatchSpec.EMPTY, false, (index, result) -> unordered.add(index)).getPassCount());
+            assertEquals(200, unordered.size());
+            assertEquals(MatchingStatus.F, new BatchMatcher(matcher).compareAll(pairs, null).get(191).getStatus());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testBatchComparisonFailsOnErrorsInsteadOfWaiting() throws InterruptedException {
+        List<ComparePair> pairs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pairs.add(ComparePair.of(new JsonObject().put("id", i), new JsonObject().put("id", i)));
+        }
+        Matcher failing = new JsonMatcher() {
+            @Override
+            public MatchingResult compare(Object expected, Object actual, MatchSpec spec) {
+                if (((JsonObject) expected).getInteger("id") == 7) {
+                    throw new StackOverflowError();
+                }
+                return super.compare(expected, actual, spec);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            try {
+                new BatchMatcher(failing, executor, 4).compareAll(pairs, MatchSpec.EMPTY);
+                fail("The error of pair 7 must fail the batch");
+            } catch (RuntimeException e) {
+                assertTrue(e.getCause() instanceof StackOverflowError);
+            }
+            try {
+                new BatchMatcher(failing, null, 4).compareAll(pairs, MatchSpec.EMPTY);
+                fail("The error of pair 7 must be rethrown");
+            } catch (StackOverflowError e) {
+                //Errors are not wrapped on the calling thread
+            }
+
+            for (boolean ordered : new boolean[]{true, false}) {
+                try {
+                    new BatchMatcher(matcher, executor, 4).compareAll(pairs, MatchSpec.EMPTY, ordered, (index, result) -> {
+                        throw new AssertionError("sink");
+                    });
+                    fail("The error of the sink must fail the batch");
+                } catch (RuntimeException e) {
+                    assertTrue(e.getCause() instanceof AssertionError);
+                }
+            }
+
+            //The first failure is kept
+            try {
+                new BatchMatcher(matcher).compareAll(pairs, MatchSpec.EMPTY, true, (index, result) -> {
+                    throw new IllegalStateException("pair " + index);
+                });
+                fail("The sink must fail the batch");
+            } catch (RuntimeException e) {
+                assertEquals("pair 0", e.getCause().getMessage());
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testAsyncComparisonCompletesAndCancels() throws Exception {
+        JsonObject expected = new JsonObject().put("id", 1).put("address", new JsonObject().put("city", "Pune"));
+        JsonObject actual = new JsonObject().put("id", 1).put("address", new JsonObject().put("city", "Delhi"));
+
+        try (AsyncMatcher async = AsyncMatcher.onVirtualThreads(new JsonMatcher(), 2)) {
+            MatchingResult result = async.compareAsync(expected, actual, MatchSpec.EMPTY).get(10, TimeUnit.SECONDS);
+            assertEquals(matcher.compare(expected, actual).getStatus(), result.getStatus());
+            assertNull(result.getTruncated());
+
+            MatchingResult cancelled = async.compareAsync(expected, actual, MatchSpec.EMPTY, new CompareBudget.Builder().setCancellation(() -> true).create())
+                    .get(10, TimeUnit.SECONDS);
+            assertEquals(BudgetLimit.CANCELLED, cancelled.getTruncated());
+        }
+
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch blocked = new CountDownLatch(1);
+            single.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            AtomicInteger calls = new AtomicInteger();
+            JsonMatcher counting = new JsonMatcher() {
+                @Override
+                public MatchingResult compare(Object expected, Object actual, MatchSpec spec, CompareBudget budget) {
+                    calls.incrementAndGet();
+                    return super.compare(expected, actual, spec, budget);
+                }
+            };
+            AsyncMatcher async = new AsyncMatcher(counting, single);
+            CompletableFuture<MatchingResult> queued = async.compareAsync(expected, actual, MatchSpec.EMPTY);
+            CompletableFuture<MatchingResult> next = async.compareAsync(expected, actual, MatchSpec.EMPTY);
+            assertTrue(queued.cancel(true));
+            blocked.countDown();
+            assertTrue(queued.isCancelled());
+            assertEquals(MatchingStatus.F, next.get(10, TimeUnit.SECONDS).getStatus());
+            assertEquals(1, calls.get());
+        } finally {
+            single.shutdown();
+            single.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testAsyncComparisonCompletesVertxFuturesOnTheirContext() throws Exception {
+        JsonObject expected = new JsonObject().put("id", 1).put("address", new JsonObject().put("city", "Pune"));
+        Vertx vertx = Vertx.vertx();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Context context = vertx.getOrCreateContext();
+            ComparisonCache cache = new ComparisonCache.Builder().setMaximumSize(100).create();
+            AsyncMatcher async = new AsyncMatcher(new JsonMatcher(new MatchOptions.Builder().setComparisonCache(cache).create()), executor);
+
+            for (int i = 0; i < 2; i++) {
+                CompletableFuture<Context> completedOn = new CompletableFuture<>();
+                //Asked from the context, as an event loop would
+                context.runOnContext(v -> async.compareAsync(context, expected, expected.copy(), MatchSpec.EMPTY).setHandler(res -> {
+                    if (res.succeeded() && res.result().getStatus() == MatchingStatus.P) {
+                        completedOn.complete(Vertx.currentContext());
+                    } else {
+                        completedOn.completeExceptionally(new AssertionError(res.cause()));
+                    }
+                }));
+                assertSame(context, completedOn.get(10, TimeUnit.SECONDS));
+            }
+            //Cancellation keeps the comparisons on the shared cache
+            assertTrue(cache.getHitCount() > 0);
+
+            CompletableFuture<Throwable> failedWith = new CompletableFuture<>();
+            new AsyncMatcher(new JsonMatcher(), task -> {
+                throw new RejectedExecutionException();
+            }).compareAsync(context, expected, expected, MatchSpec.EMPTY).setHandler(res -> failedWith.complete(res.cause()));
+            assertTrue(failedWith.get(10, TimeUnit.SECONDS) instanceof RejectedExecutionException);
+        } finally {
+            vertx.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMatchingServiceComparesWithRegisteredSpec() throws IOException {
+        MatchingService service = new MatchingService(new JsonMatcher(), new HashMap<>());
+        service.register("trades", new JsonObject().put("ignored", new JsonObject().put("ts", true)).put("businessKey", new JsonObject().put("id", true)));
+        assertNull(service.getSpec("unknown"));
+        assertSame(MatchSpec.EMPTY, service.getSpec(null));
+
+        JsonArray expected = new JsonArray().add(new JsonObject().put("id", 1).put("qty", 10).put("ts", 1));
+        JsonArray actual = new JsonArray().add(new JsonObject().put("id", 1).put("qty", 11).put("ts", 2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(MatchingStatus.F, service.compare(service.getSpec("trades"), expected, actual, MatchingService.format("patch"), out));
+        assertEquals(new JsonArray().add(new JsonObject().put("op", "replace").put("path", "/0/qty").put("value", 11)), new JsonArray(out.toString()));
+        assertEquals(DiffWriter.Format.NDJSON, MatchingService.format("ndjson"));
+    }
+
+    @Test
+    public void testMatchingVerticleServesSpecsAndComparisonsOverHttp() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            int port = freePort();
+            deploy(vertx, new JsonObject().put("port", port));
+            HttpClient client = vertx.createHttpClient();
+
+            String trades = new JsonObject().put("ignored", new JsonObject().put("ts", true)).put("businessKey", new JsonObject().put("id", true)).encode();
+            assertEquals(204, send(client.request(HttpMethod.PUT, port, "localhost", "/specs/trades"), trades).getInteger("statusCode").intValue());
+
+            String body = new JsonObject()
+                    .put("expected", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 10).put("ts", 1)))
+                    .put("actual", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 11).put("ts", 2))).encode();
+            JsonObject patch = send(client.request(HttpMethod.POST, port, "localhost", "/compare/trades"), body);
+            assertEquals(200, patch.getInteger("statusCode").intValue());
+            assertEquals("F", patch.getString("matchStatus"));
+            assertEquals(new JsonArray().add(new JsonObject().put("op", "replace").put("path", "/0/qty").put("value", 11)), new JsonArray(patch.getString("body")));
+
+            JsonObject lines = send(client.request(HttpMethod.POST, port, "localhost", "/compare/trades?format=ndjson"), body);
+            assertEquals("application/x-ndjson", lines.getString("contentType"));
+            assertEquals(new JsonObject().put("path", "/0/qty").put("status", "F").put("exp", 10).put("act", 11), new JsonObject(lines.getString("body").trim()));
+
+            JsonObject noSpec = send(client.request(HttpMethod.POST, port, "localhost", "/compare"), body);
+            assertEquals("F", noSpec.getString("matchStatus"));
+            assertEquals(2, new JsonArray(noSpec.getString("body")).size());
+
+            assertEquals(404, send(client.request(HttpMethod.POST, port, "localhost", "/compare/unknown"), body).getInteger("statusCode").intValue());
+            assertEquals(400, send(client.request(HttpMethod.POST, port, "localhost", "/compare/trades"), "{\"expected\":").getInteger("statusCode").intValue());
+            String invalidSpec = new JsonObject().put("ignored", new JsonObject().put("id", true)).put("businessKey", new JsonObject().put("id", true)).encode();
+            assertEquals(400, send(client.request(HttpMethod.PUT, port, "localhost", "/specs/invalid"), invalidSpec).getInteger("statusCode").intValue());
+            assertEquals(404, send(client.request(HttpMethod.GET, port, "localhost", "/specs/trades"), "").getInteger("statusCode").intValue());
+        } finally {
+            JsonMatcherTest.<Void>await(vertx::close);
+        }
+    }
+
+    @Test
+    public void testMatchingVerticlePausesRequestsBeyondMaxInFlight() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            int port = freePort();
+            MatchingVerticle verticle = new MatchingVerticle();
+            deploy(vertx, verticle, new JsonObject().put("port", port).put("maxInFlight", 1));
+            HttpClient client = vertx.createHttpClient();
+
+            //Admitted, its body is still being sent
+            HttpClientRequest slow = client.request(HttpMethod.POST, port, "localhost", "/compare").setChunked(true);
+            CompletableFuture<JsonObject> slowResponse = response(slow);
+            slow.write("{\"expected\": {\"id\": 1},");
+            awaitVerticle(verticle, admitted -> admitted.getInFlight() == 1);
+
+            //Paused until the slow one completes
+            HttpClientRequest next = client.request(HttpMethod.POST, port, "localhost", "/compare");
+            CompletableFuture<JsonObject> nextResponse = response(next);
+            next.end(new JsonObject().put("expected", 1).put("actual", 1).encode());
+            awaitVerticle(verticle, paused -> paused.getWaiting() == 1);
+            assertFalse(nextResponse.isDone());
+
+            slow.end("\"actual\": {\"id\": 2}}");
+            assertEquals("F", slowResponse.get(10, TimeUnit.SECONDS).getString("matchStatus"));
+            assertEquals("P", nextResponse.get(10, TimeUnit.SECONDS).getString("matchStatus"));
+        } finally {
+            JsonMatcherTest.<Void>await(vertx::close);
+        }
+    }
+
+    @Test
+    public void testMatchingVerticleServesTheEventBusWithSpecsOfItsAddress() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            deploy(vertx, new JsonObject().put("port", freePort()));
+            deploy(vertx, new JsonObject().put("port", freePort()).put("address", "other-matcher"));
+            EventBus eventBus = vertx.eventBus();
+
+            JsonObject spec = new JsonObject().put("id", "trades").put("businessKey", new JsonObject().put("id", true));
+            Message<JsonObject> registered = request(eventBus, "json-matcher.spec", spec);
+            assertEquals(new JsonObject().put("id", "trades"), registered.body());
+
+            JsonObject compare = new JsonObject().put("spec", "trades")
+                    .put("expected", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 10)))
+                    .put("actual", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 11)));
+            Message<JsonObject> compared = request(eventBus, "json-matcher.compare", compare);
+            assertEquals("F", compared.body().getString("status"));
+            assertEquals(new JsonArray().add(new JsonObject().put("op", "replace").put("path", "/0/qty").put("value", 11)), compared.body().getJsonArray("diff"));
+
+            //Specs belong to the address they were registered on
+            for (String address : List.of("json-matcher.compare", "other-matcher.compare")) {
+                JsonObject unknown = compare.copy().put("spec", address.startsWith("other") ? "trades" : "unknown");
+                try {
+                    request(eventBus, address, unknown);
+                    fail("The spec must be unknown on " + address);
+                } catch (ExecutionException e) {
+                    assertEquals(404, ((ReplyException) e.getCause()).failureCode());
+                }
+            }
+            try {
+                request(eventBus, "json-matcher.spec", new JsonObject());
+                fail("A spec without id must be rejected");
+            } catch (ExecutionException e) {
+                assertEquals(400, ((ReplyException) e.getCause()).failureCode());
+            }
+        } finally {
+            JsonMatcherTest.<Void>await(vertx::close);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void deploy(Vertx vertx, JsonObject config) throws Exception {
+        deploy(vertx, new MatchingVerticle(), config);
+    }
+
+    private static void deploy(Vertx vertx, MatchingVerticle verticle, JsonObject config) throws Exception {
+        JsonMatcherTest.<String>await(done -> vertx.deployVerticle(verticle, new DeploymentOptions().setConfig(config), done));
+    }
+
+    /**
+     * Polls the verticle on its context until the condition holds.
+     */
+    private static void awaitVerticle(MatchingVerticle verticle, Predicate<MatchingVerticle> condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!JsonMatcherTest.<Boolean>await(done -> verticle.getContext().runOnContext(v -> done.handle(Future.succeededFuture(condition.test(verticle)))))) {
+            assertTrue("The verticle did not get there in time", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Message<JsonObject> request(EventBus eventBus, String address, JsonObject body) throws Exception {
+        return await(done -> eventBus.request(address, body, done));
+    }
+
+    private static <T> T await(Consumer<Handler<AsyncResult<T>>> call) throws Exception {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.accept(res -> {
+            if (res.succeeded()) {
+                future.complete(res.result());
+            } else {
+                future.completeExceptionally(res.cause());
+            }
+        });
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private static JsonObject send(HttpClientRequest request, String body) throws Exception {
+        CompletableFuture<JsonObject> response = response(request);
+        request.end(body);
+        return response.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return status code, match status (a trailer), content type and body of the response to the request
+     */
+    private static CompletableFuture<JsonObject> response(HttpClientRequest request) {
+        CompletableFuture<JsonObject> response = new CompletableFuture<>();
+        request.exceptionHandler(response::completeExceptionally);
+        request.handler(res -> res.bodyHandler(body -> response.complete(new JsonObject()
+                .put("statusCode", res.statusCode())
+                .put("matchStatus", res.getTrailer("X-Match-Status"))
+                .put("contentType", res.getHeader("Content-Type"))
+                .put("body", body.toString()))));
+        return response;
+    }
+
+    @Test
+    public void testIncrementalComparisonRecomputesOnlyChangedPaths() {
+        JsonObject expected = new JsonObject().put("a", new JsonObject().put("x", 1))
+                .put("b", new JsonObject().put("y", 1).put("z", new JsonArray().add(1).add(2)))
+                .put("trades", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 10)).add(new JsonObject().put("id", 2).put("qty", 20)));
+        JsonObject actual = expected.copy();
+        actual.getJsonObject("b").put("y", 2);
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("trades", new JsonObject().put("id", true)).getMap());
+
+        IncrementalComparison comparison = new JsonMatcher().compareIncrementally(expected, actual, spec);
+        MatchingResult first = comparison.getResult();
+        assertEquals(MatchingStatus.F, first.getStatus());
+
+        MatchingResult second = comparison.apply(new JsonArray().add(new JsonObject().put("op", "replace").put("path", "/a/x").put("value", 3)));
+        assertEquals(Json.encode(matcher.compare(expected, comparison.getActual(), spec)), Json.encode(second));
+        assertSame(first.getDiff().get("b").getDiff(), second.getDiff().get("b").getDiff());
+        assertSame(first.getDiff().get("trades").getDiff(), second.getDiff().get("trades").getDiff());
+
+        MatchingResult third = comparison.apply(new JsonArray()
+                .add(new JsonObject().put("op", "replace").put("path", "/b/y").put("value", 1))
+                .add(new JsonObject().put("op", "replace").put("path", "/a/x").put("value", 1))
+                .add(new JsonObject().put("op", "move").put("from", "/trades/0").put("path", "/trades/-")));
+        assertEquals(MatchingStatus.P, third.getStatus());
+        assertEquals(Json.encode(matcher.compare(expected, comparison.getActual(), spec)), Json.encode(third));
+
+        ((JsonObject) comparison.getActual()).getJsonArray("trades").getJsonObject(1).put("qty", 11);
+        assertEquals(MatchingStatus.F, comparison.update(List.of("/trades/1/qty")).getStatus());
+    }
+
+    @Test
+    public void testIncrementalComparisonAccountsForChangesOfFailingPatches() {
+        JsonObject expected = new JsonObject().put("o", new JsonObject().put("a", 1)).put("p", new JsonObject().put("b", 1));
+        IncrementalComparison comparison = new JsonMatcher().compareIncrementally(expected, expected.copy(), null);
+        assertEquals(MatchingStatus.P, comparison.getResult().getStatus());
+
+        try {
+            comparison.apply(new JsonArray()
+                    .add(new JsonObject().put("op", "replace").put("path", "/o/a").put("value", 2))
+                    .add(new JsonObject().put("op", "test").put("path", "/p/b").put("value", 2)));
+            fail("The test operation must fail the patch");
+        } catch (RuntimeException e) {
+            assertEquals("Patch test failed at /p/b.", e.getMessage());
+        }
+        assertEquals(MatchingStatus.F, matcher.compare(expected, comparison.getActual()).getStatus());
+        assertEquals(MatchingStatus.F, comparison.update(List.of()).getStatus());
+    }
+
+    @Test
+    public void testIncrementalComparisonKeepsItsOwnCopyOfPatchValues() {
+        JsonObject expected = new JsonObject().put("o", new JsonObject().put("a", 1)).put("p", new JsonObject().put("b", 1));
+        IncrementalComparison comparison = new JsonMatcher().compareIncrementally(expected, new JsonObject(), null);
+
+        JsonObject added = new JsonObject().put("a", 1);
+        JsonObject replaced = new JsonObject().put("b", 1);
+        comparison.apply(new JsonArray()
+                .add(new JsonObject().put("op", "add").put("path", "/o").put("value", added))
+                .add(new JsonObject().put("op", "add").put("path", "/p").put("value", new JsonObject()))
+                .add(new JsonObject().put("op", "replace").put("path", "/p").put("value", replaced)));
+        assertEquals(MatchingStatus.P, comparison.getResult().getStatus());
+
+        added.put("a", 2);
+        replaced.put("b", 2);
+        assertEquals(expected, comparison.getActual());
+        assertEquals(MatchingStatus.P, comparison.update(List.of()).getStatus());
+    }
+
+    @Test
+    public void testComparisonCacheReusesPassingSubtrees() {
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("lines", new JsonObject().put("id", true)).getMap());
+        ComparisonCache cache = new ComparisonCache.Builder().create();
+        JsonMatcher cached = new JsonMatcher(new MatchOptions.Builder().setComparisonCache(cache).create());
+        JsonMatcher plain = new JsonMatcher();
+
+        JsonObject expected = new JsonObject().put("ref", new JsonObject().put("ccy", "USD").put("venue", "X"))
+                .put("lines", new JsonArray().add(new JsonObject().put("id", 1).put("qty", 10)).add(new JsonObject().put("id", 2).put("qty", 20)));
+        JsonObject actual = expected.copy();
+        actual.getJsonArray("lines").getJsonObject(1).put("qty", 21);
+
+        MatchingResult first = cached.compare(expected, actual, spec);
+        assertEquals(0, cache.getHitCount());
+        MatchingResult second = cached.compare(expected, actual.copy(), spec);
+        assertTrue(cache.getHitCount() > 0);
+        assertEquals(Json.encode(plain.compare(expected, actual, spec)), Json.encode(first));
+        assertEquals(Json.encode(first), Json.encode(second));
+        assertEquals(MatchingStatus.F, second.getStatus());
+        try {
+            second.getDiff().get("lines").getDiff().get("0").getDiff().put("qty", first);
+            fail("Cached results must be read-only");
+        } catch (UnsupportedOperationException e) {
+            //Shared with every comparison hitting it
+        }
+
+        //Specs compiled on every call of the Map overloads hit the same entries
+        Map<String, Object> keys = new JsonObject().put("lines", new JsonObject().put("id", true)).getMap();
+        long hits = cache.getHitCount();
+        cached.compare(expected, actual, null, keys);
+        assertTrue(cache.getHitCount() > hits);
+
+        ComparisonCache small = new ComparisonCache.Builder().setMaximumSize(1).create();
+        JsonMatcher bounded = new JsonMatcher(new MatchOptions.Builder().setComparisonCache(small).create());
+        for (int i = 0; i < 40; i++) {
+            bounded.compare(new JsonObject().put("id", i), new JsonObject().put("id", i), spec);
+        }
+        assertTrue(small.getEvictionCount() > 0);
+        assertTrue(small.size() <= 16);
+    }
+
+    @Test
+    public void testComparisonCacheTellsApartValuesOfCollidingHashCodes() {
+        JsonMatcher cached = new JsonMatcher(new MatchOptions.Builder().setComparisonCache(new ComparisonCache.Builder().create()).create());
+        //"Aa" and "BB" share their String hash code, 0 and 2^32 + 1 their Long hash code
+        JsonObject ccy = new JsonObject().put("id", 1).put("ccy", "Aa");
+        JsonObject qty = new JsonObject().put("qty", 0L);
+        JsonArray lines = new JsonArray().add(ccy);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(MatchingStatus.P, cached.compare(ccy, ccy.copy()).getStatus());
+            assertEquals(MatchingStatus.P, cached.compare(qty, qty.copy()).getStatus());
+            assertEquals(MatchingStatus.P, cached.compare(lines, lines.copy()).getStatus());
+        }
+        assertEquals(MatchingStatus.F, cached.compare(ccy, new JsonObject().put("id", 1).put("ccy", "BB")).getStatus());
+        assertEquals(MatchingStatus.F, cached.compare(qty, new JsonObject().put("qty", 0x100000001L)).getStatus());
+        assertEquals(MatchingStatus.F, cached.compare(lines, new JsonArray().add(new JsonObject().put("id", 1).put("ccy", "BB"))).getStatus());
+    }
+
+    @Test
+    public void testStatsReportWhereTheComparisonSpendsItsWork() {
+        JsonArray expTrades = new JsonArray();
+        JsonArray actTrades = new JsonArray();
+        for (int i = 0; i < 20; i++) {
+            expTrades.add(new JsonObject().put("id", i).put("qty", i));
+            actTrades.add(new JsonObject().put("id", i).put("qty", i % 2 == 0 ? i : -i));
+        }
+        JsonObject expected = new JsonObject().put("book", new JsonObject().put("trades", expTrades)).put("tags", new JsonArray().add("a"));
+        JsonObject actual = new JsonObject().put("book", new JsonObject().put("trades", actTrades)).put("tags", new JsonArray().add("a"));
+
+        List<MatchStats> sunk = new ArrayList<>();
+        JsonMatcher matcher = new JsonMatcher(new MatchOptions.Builder().setStatsSink(sunk::add).create());
+        MatchStats stats = new MatchStats();
+        MatchingResult result = matcher.compareWithStats(expected, actual, MatchSpec.EMPTY, stats);
+
+        assertEquals(Json.encode(new JsonMatcher().compare(expected, actual)), Json.encode(result));
+        assertEquals(List.of(stats), sunk);
+        assertEquals(400 + 1, stats.getCandidatePairs());
+        assertTrue(stats.getScoredPairs() > 0 && stats.getScoredPairs() <= 100);
+        assertTrue(stats.getLeafComparisons() >= 40);
+        assertTrue(stats.getNodesVisited() >= 4 + 20);
+        assertEquals(3, stats.getMaxDepth());
+        assertTrue(stats.getResultCount() > 20);
+        assertEquals("/book/trades", stats.getExpensivePaths().get(0).getPath());
+        assertEquals(20, stats.getExpensivePaths().get(0).getExpectedSize());
+        assertEquals("/tags", stats.getExpensivePaths().get(1).getPath());
+
+        new JsonMatcher().compareWithStats(expected, actual, MatchSpec.EMPTY, null);
+        matcher.compare(expected, actual);
+        assertEquals(2, sunk.size());
+        assertEquals(stats.getCandidatePairs(), sunk.get(1).getCandidatePairs());
+    }
+
+    @Test
+    public void testFlightRecorderEventsOfSlowComparisons() throws Exception {
+        JsonObject expected = new JsonObject().put("trades", new JsonArray().add(new JsonObject().put("id", 1)).add(new JsonObject().put("id", 2)));
+        JsonObject actual = new JsonObject().put("trades", new JsonArray().add(new JsonObject().put("id", 2)).add(new JsonObject().put("id", 3)));
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("trades", new JsonObject().put("id", true)).getMap());
+
+        Path dump = Files.createTempFile("matcher", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.rags.tools.matcher.Compare").withThreshold(Duration.ZERO);
+            recording.enable("com.rags.tools.matcher.ArrayMatch").withThreshold(Duration.ZERO);
+            recording.enable("com.rags.tools.matcher.Assignment").withThreshold(Duration.ofHours(1));
+            recording.start();
+            new JsonMatcher().compare(expected, actual, spec);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        Map<String, RecordedEvent> events = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            events.put(event.getEventType().getName(), event);
+        }
+        Files.delete(dump);
+
+        RecordedEvent compare = events.get("com.rags.tools.matcher.Compare");
+        assertEquals(1, compare.getInt("expectedSize"));
+        assertEquals("F", compare.getString("status"));
+        RecordedEvent array = events.get("com.rags.tools.matcher.ArrayMatch");
+        assertEquals(2, array.getInt("actualSize"));
+        assertEquals("K", array.getString("algo"));
+        assertNull(events.get("com.rags.tools.matcher.Assignment"));
+    }
+
+    @Test
+    public void testFlightRecorderAssignmentEventsRecordTheModeThatRan() throws Exception {
+        JsonArray identical = new JsonArray().add(new JsonObject().put("id", 1)).add(new JsonObject().put("id", 2));
+        JsonArray reordered = new JsonArray().add(new JsonObject().put("id", 2)).add(new JsonObject().put("id", 1));
+        JsonArray changed = new JsonArray().add(new JsonObject().put("id", 3)).add(new JsonObject().put("id", 4));
+        JsonMatcher optimal = new JsonMatcher(new MatchOptions.Builder().setAssignmentMode(AssignmentMode.OPTIMAL).setOptimalAssignmentLimit(1).create());
+
+        Path dump = Files.createTempFile("matcher", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.rags.tools.matcher.Assignment").withThreshold(Duration.ZERO);
+            recording.start();
+            new JsonMatcher().compare(identical, reordered, MatchSpec.EMPTY);
+            optimal.compare(identical, changed, MatchSpec.EMPTY);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            if (event.getEventType().getName().equals("com.rags.tools.matcher.Assignment")) {
+                events.add(event);
+            }
+        }
+        Files.delete(dump);
+
+        //Only the changed arrays go through the engine, and OPTIMAL falls back to GREEDY above its limit
+        assertEquals(1, events.size());
+        assertEquals("GREEDY", events.get(0).getString("mode"));
+        assertEquals(2, events.get(0).getInt("actualSize"));
+    }
+
+    @Test
+    public void testNumbersOutsideJsonCompareByTheValueJacksonWrites() {
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("count", new AtomicLong(5));
+        expected.put("total", 7L);
+        JsonObject same = new JsonObject().put("count", 5).put("total", 7);
+        JsonObject changed = new JsonObject().put("count", 6).put("total", 7);
+
+        assertFalse(JsonValues.isJsonTree(expected));
+        assertEquals(MatchingStatus.P, new JsonMatcher().compare(expected, same.getMap()).getStatus());
+        assertEquals(MatchingStatus.F, new JsonMatcher().compare(expected, changed.getMap()).getStatus());
+
+        Map<String, Object> other = new HashMap<>();
+        other.put("count", new AtomicLong(5));
+        other.put("total", 7L);
+        assertEquals(MatchingStatus.P, new JsonMatcher().compare(expected, other).getStatus());
+    }
+
+    @Test
+    public void testPojosCompareLikeTheirJson() {
+        Trade expected = new Trade("T1", Side.BUY, new BigDecimal("10.50"), List.of(new Leg("USD", 1), new Leg("EUR", 2)), null, new Money(5));
+        Trade actual = new Trade("T1", Side.SELL, new BigDecimal("10.5"), List.of(new Leg("EUR", 2), new Leg("USD", 3)), "late", new Money(6));
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("legs", new JsonObject().put("ccy", true)).getMap());
+
+        MatchingResult result = new JsonMatcher().compare(expected, actual, spec);
+        MatchingResult viaJson = new JsonMatcher().compare(new JsonObject(Json.encode(expected)), new JsonObject(Json.encode(actual)), spec);
+        assertEquals(Json.encode(viaJson), Json.encode(result));
+        assertEquals(MatchingStatus.P, result.getDiff().get("price").getStatus());
+        assertEquals(MatchingStatus.NW, result.getDiff().get("comment").getStatus());
+        assertNull(result.getDiff().get("internal"));
+        assertEquals(MatchingStatus.F, result.getDiff().get("side").getStatus());
+        assertTrue(new JsonMatcher().matches(expected, new Trade("T1", Side.BUY, new BigDecimal("10.5"), List.of(new Leg("EUR", 2), new Leg("USD", 1)), null, new Money(5)), spec));
+
+        IncrementalComparison comparison = new JsonMatcher().compareIncrementally(expected, actual, spec);
+        comparison.update(List.of());
+        assertEquals(Json.encode(viaJson), Json.encode(comparison.getResult()));
+
+        JsonObject failedAct = (JsonObject) result.getAct();
+        failedAct.put("side", "BUY");
+        ((JsonArray) result.getDiff().get("legs").getAct()).add("extra");
+        assertEquals(Json.encode(viaJson.getAct()), Json.encode(new JsonMatcher().compare(expected, actual, spec).getAct()));
+        assertEquals(new JsonObject(Json.encode(viaJson.getAct())).fieldNames().toString(), failedAct.fieldNames().toString());
+    }
+
+    @Test
+    public void testSpecCompareFallsBackToMapOverloadsOfOtherMatchers() {
+        List<Map<String, Object>> received = new ArrayList<>();
+        Matcher legacy = new Matcher() {
+            @Override
+            public MatchingResult compare(Object expected, Object actual) {
+                return compare(expected, actual, null, null);
+            }
+
+            @Override
+            public MatchingResult compare(Object expected, Object actual, Map<String, Object> ignoreAttributes) {
+                return compare(expected, actual, ignoreAttributes, null);
+            }
+
+            @Override
+            public MatchingResult compare(Object expected, Object actual, Map<String, Object> ignoreAttributes, Map<String, Object> businessKey) {
+                received.add(ignoreAttributes);
+                received.add(businessKey);
+                return new JsonMatcher().compare(expected, actual, ignoreAttributes, businessKey);
+            }
+        };
+
+        Map<String, Object> ignored = new JsonObject().put("ts", true).put("trades", new JsonObject().put("venue", true)).getMap();
+        Map<String, Object> keys = new JsonObject().put("trades", new JsonObject().put("id", true)).getMap();
+        JsonObject expected = new JsonObject().put("ts", 1).put("trades", new JsonArray().add(new JsonObject().put("id", 1).put("venue", "X")));
+        JsonObject actual = new JsonObject().put("ts", 2).put("trades", new JsonArray().add(new JsonObject().put("id", 1).put("venue", "Y")));
+
+        MatchingResult result = legacy.compare(expected, actual, MatchSpec.compile(ignored, keys));
+        assertEquals(new JsonObject(ignored), new JsonObject(received.get(0)));
+        assertEquals(new JsonObject(keys), new JsonObject(received.get(1)));
+        assertEquals(Json.encode(new JsonMatcher().compare(expected, actual, ignored, keys)), Json.encode(result));
+        assertTrue(legacy.matches(expected, actual, MatchSpec.compile(ignored, keys)));
+    }
+
+    @Test
+    public void testArrayPairingBuildsTheSameResultAsComparingThePair() {
+        JsonArray expected = new JsonArray("[{\"id\":1,\"a\":{\"x\":1,\"y\":2},\"l\":[1,2]},"
+                + "{\"id\":2,\"a\":{\"x\":5,\"y\":6},\"l\":[3]}]");
+        JsonArray actual = new JsonArray("[{\"id\":2,\"a\":{\"x\":5,\"y\":7},\"l\":[3,4]},"
+                + "{\"id\":1,\"a\":{\"x\":1,\"y\":2},\"l\":[2,1]}]");
+
+        MatchingResult result = matcher.compare(expected, actual);
+        assertEquals(MatchingStatus.F, result.getStatus());
+        assertEquals(1, (int) result.getDiff().get("0").getMatIndex());
+        assertEquals(0, (int) result.getDiff().get("1").getMatIndex());
+        assertEquals(MatchingStatus.P, result.getDiff().get("0").getStatus());
+        for (int i = 0; i < expected.size(); i++) {
+            MatchingResult elem = result.getDiff().get(String.valueOf(i));
+            MatchingResult pair = matcher.compare(expected.getValue(i), actual.getValue(elem.getMatIndex()));
+            assertEquals(pair.getStatus(), elem.getStatus());
+            assertEquals(Json.encode(pair.getDiff()), Json.encode(elem.getDiff()));
+        }
+    }
+
+    @Test
+    public void testArrayPairingPrefersKeyMatchOverMoreMatchingAttributes() {
+        MatchSpec spec = MatchSpec.compile(null, new JsonObject().put("id", true).getMap());
+        JsonArray expected = new JsonArray("[{\"id\":1,\"v\":1,\"w\":1}]");
+        JsonArray actual = new JsonArray("[{\"id\":3,\"v\":1,\"w\":1},{\"id\":1,\"v\":2,\"w\":2}]");
+
+        MatchingResult result = matcher.compare(expected, actual, spec);
+        MatchingResult elem = result.getDiff().get("0");
+        assertEquals(MatchingStatus.PK, elem.getStatus());
+        assertEquals(1, (int) elem.getMatIndex());
+        assertEquals(Json.encode(matcher.compare(expected.getValue(0), actual.getValue(1), spec).getDiff()), Json.encode(elem.getDiff()));
+        assertEquals(MatchingStatus.NW, result.getDiff().get("0NW").getStatus());
+    }
+
+    @Test
+    public void testArrayPairingDisregardsIgnoredAttributes() {
+        MatchSpec spec = MatchSpec.compile(new JsonObject().put("ts", true).getMap());
+        JsonArray expected = new JsonArray("[{\"id\":1,\"ts\":1}]");
+        JsonArray actual = new JsonArray("[{\"id\":2,\"ts\":1},{\"id\":1,\"ts\":9}]");
+
+        MatchingResult elem = matcher.compare(expected, actual, spec).getDiff().get("0");
+        assertEquals(MatchingStatus.P, elem.getStatus());
+        assertEquals(1, (int) elem.getMatIndex());
+        assertEquals(MatchingStatus.IGN, elem.getDiff().get("ts").getStatus());
+    }
+
+    @Test
+    public void testArrayPairingBreaksTiesOnTheFirstCandidate() {
+        JsonArray candidates = new JsonArray("[{\"a\":1,\"b\":2},{\"a\":2,\"b\":1}]");
+
+        MatchingResult one = matcher.compare(new JsonArray("[{\"a\":1,\"b\":1}]"), candidates);
+        assertEquals(0, (int) one.getDiff().get("0").getMatIndex());
+        assertEquals(1, (int) one.getDiff().get("1NW").getMatIndex());
+
+        MatchingResult two = matcher.compare(new JsonArray("[{\"a\":1,\"b\":1},{\"a\":1,\"b\":1}]"), candidates);
+        assertEquals(0, (int) two.getDiff().get("0").getMatIndex());
+        assertEquals(1, (int) two.getDiff().get("1").getMatIndex());
+        assertEquals(1, (int) two.getDiff().get("1").getCount());
+    }
+
+    public enum Side {BUY, SELL}
+
+    public static class Trade {
+        private final String id;
+        private final Side side;
+        private final BigDecimal price;
+        private final List<Leg> legs;
+        private final String comment;
+        private final Money fee;
+
+        Trade(String id, Side side, BigDecimal price, List<Leg> legs, String comment, Money fee) {
+            this.id = id;
+            this.side = side;
+            this.price = price;
+            this.legs = legs;
+            this.comment = comment;
+            this.fee = fee;
+        }
+
+        @JsonProperty("tradeId")
+        public String getId() {
+            return id;
+        }
+
+        public Side getSide() {
+            return side;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        public List<Leg> getLegs() {
+            return legs;
+        }
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public String getComment() {
+            return comment;
+        }
+
+        public Money getFee() {
+            return fee;
+        }
+
+        @JsonIgnore
+        public String getInternal() {
+            return id + comment;
+        }
+    }
+
+    public static class Leg {
+        public final String ccy;
+        public final int qty;
+
+        Leg(String ccy, int qty) {
+            this.ccy = ccy;
+            this.qty = qty;
+        }
+    }
+
+    public static class Money {
+        private final long cents;
+
+        Money(long cents) {
+            this.cents = cents;
+        }
+
+        @JsonValue
+        public String amount() {
+            return cents / 100 + "." + cents % 100;
+        }
+    }
+}